@@ -0,0 +1,132 @@
+package org.lt.commushop.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class RecommendConfig {
+    @Autowired
+    private RecommendProperties recommendProperties;
+
+    /**
+     * 相似度矩阵构建专用线程池
+     * 与 commonPool 和 Tomcat 请求线程隔离，线程数受配置限制，避免重建时抢占全部CPU
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool similarityBuildPool() {
+        int parallelism = recommendProperties.getBuild().getParallelism();
+        if (parallelism <= 0) {
+            parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("similarity-build-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ForkJoinPool(parallelism, factory, null, false);
+    }
+
+    /**
+     * 相似度模型后台任务线程池：模型缺失时的重建、商品变更后的增量更新
+     * 任务在后台线程中执行，请求线程只按超时等待结果；同一模型同一时间只会提交一个重建任务
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService similarityRebuildExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "similarity-rebuild-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 手动重建任务执行器：单线程，任务依次执行，不占用模型缺失重建和增量更新的线程
+     * 每类模型最多一个排队或运行中的任务，队列只需容纳少量任务（含排队时已取消、尚未出队的任务），满时拒绝提交
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService rebuildJobExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(4), runnable -> {
+            Thread thread = new Thread(runnable, "similarity-rebuild-job");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 混合推荐并行计算线程池：协同过滤、基于内容与热门商品三路同时计算
+     * 线程数、队列均有界，队列满时拒绝提交（AbortPolicy），调用方把该路按缺失处理，
+     * 不会在请求线程中执行而绕过分支超时
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService recommendFanoutExecutor() {
+        RecommendProperties.Hybrid hybrid = recommendProperties.getHybrid();
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(hybrid.getFanoutThreads(), hybrid.getFanoutThreads(), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(hybrid.getFanoutQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "recommend-fanout-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 推荐结果预计算线程池：单线程顺序执行，避免与请求线程、模型重建争抢数据库和CPU
+     * 队列有界，满时由提交方丢弃任务
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService recommendPrecomputeExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(recommendProperties.getPrecompute().getQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "recommend-precompute");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 批量推荐打分线程池：与在线请求的扇出线程池隔离，批量任务再大也不挤占在线推荐
+     * 每批任务数不超过 chunk-size，队列按此限定；满时由提交线程自己执行
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService recommendBatchExecutor() {
+        RecommendProperties.Batch batch = recommendProperties.getBatch();
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(batch.getThreads(), batch.getThreads(), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(batch.getChunkSize()), runnable -> {
+            Thread thread = new Thread(runnable, "recommend-batch-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 相似度模型专用 RedisTemplate：值为自定义编码后的原始字节，不经过 JDK 序列化
+     * 增量补丁按行存放在哈希中，字段为商品ID字符串，值同样为原始字节
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> modelRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnectionFactory);
+        template.setKeySerializer(StringRedisSerializer.UTF_8);
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(StringRedisSerializer.UTF_8);
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        return template;
+    }
+}
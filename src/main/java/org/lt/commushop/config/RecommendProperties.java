@@ -0,0 +1,378 @@
+package org.lt.commushop.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 推荐系统配置（application.yml 中 recommend 前缀）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "recommend")
+public class RecommendProperties {
+    /**
+     * 相似度矩阵构建配置
+     */
+    private Build build = new Build();
+
+    /**
+     * 相似度模型配置
+     */
+    private Model model = new Model();
+
+    /**
+     * 协同过滤相似度配置
+     */
+    private Cf cf = new Cf();
+
+    /**
+     * 基于内容推荐配置
+     */
+    private Content content = new Content();
+
+    /**
+     * 新用户冷启动推荐配置
+     */
+    private ColdStart coldStart = new ColdStart();
+
+    /**
+     * 基于行为事件的增量更新配置
+     */
+    private Incremental incremental = new Incremental();
+
+    /**
+     * 用户行为数据加载配置
+     */
+    private Behavior behavior = new Behavior();
+
+    /**
+     * 在售商品目录配置
+     */
+    private Catalog catalog = new Catalog();
+
+    /**
+     * 混合推荐配置
+     */
+    private Hybrid hybrid = new Hybrid();
+
+    /**
+     * 热门商品推荐配置
+     */
+    private Trending trending = new Trending();
+
+    /**
+     * 混合推荐结果预计算配置
+     */
+    private Precompute precompute = new Precompute();
+
+    /**
+     * 批量推荐配置
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * 诊断配置
+     */
+    private Diagnostics diagnostics = new Diagnostics();
+
+    @Data
+    public static class Build {
+        /**
+         * 是否并行构建相似度矩阵（false 时在调用线程上串行计算）
+         */
+        private boolean parallel = true;
+
+        /**
+         * 构建专用 ForkJoinPool 的线程数，小于等于0时取 CPU 核数的一半
+         */
+        private int parallelism = 0;
+
+        /**
+         * 每个子任务最少处理的行数
+         */
+        private int grainSize = 64;
+    }
+
+    @Data
+    public static class Model {
+        /**
+         * 每个商品保留的近邻数量（Top-N）
+         */
+        private int neighborSize = 50;
+
+        /**
+         * 写入Redis前是否对编码后的模型做 deflate 压缩
+         */
+        private boolean compress = true;
+
+        /**
+         * 本地模型快照检查Redis版本号的最小间隔（毫秒）
+         */
+        private long refreshIntervalMs = 5000;
+
+        /**
+         * 模型缺失时请求线程等待重建完成的最长时间（毫秒），超时返回空结果
+         */
+        private long rebuildWaitMs = 3000;
+
+        /**
+         * 集群重建锁的过期时间（毫秒），需大于一次全量重建的耗时
+         */
+        private long rebuildLockTtlMs = 600000;
+
+        /**
+         * Redis中保留的模型版本数（含当前版本），用于回滚
+         */
+        private int retainedVersions = 3;
+    }
+
+    @Data
+    public static class Cf {
+        /**
+         * 购买通道的相似度核函数：cosine（余弦）或 adjusted-cosine（按用户均值中心化的调整余弦）
+         * 调整余弦下用户的一次新行为会改变其均值，影响该用户买过的所有商品对，因此不做增量更新，只在全量构建时生效
+         */
+        private String purchaseKernel = "cosine";
+
+        /**
+         * 购买相似度权重
+         */
+        private double purchaseWeight = 0.7;
+
+        /**
+         * 收藏（Jaccard）相似度权重
+         */
+        private double favoriteWeight = 0.3;
+
+        /**
+         * 构建相似度矩阵时行为权重的时间衰减半衰期（天），小于等于0时不衰减
+         */
+        private double decayHalfLifeDays = 180;
+    }
+
+    @Data
+    public static class Content {
+        /**
+         * 是否启用 MinHash/LSH 候选生成（关闭时每个商品与全部商品逐一打分）
+         */
+        private boolean lshEnabled = true;
+
+        /**
+         * LSH 分段数，越大召回越高、候选越多
+         */
+        private int lshBands = 32;
+
+        /**
+         * 每段包含的 MinHash 个数，越大桶越"严格"、候选越少
+         */
+        private int lshRows = 2;
+
+        /**
+         * 文本相似度权重
+         */
+        private double textWeight = 0.6;
+
+        /**
+         * 类别相似度权重
+         */
+        private double categoryWeight = 0.3;
+
+        /**
+         * 价格相似度权重
+         */
+        private double priceWeight = 0.1;
+
+        /**
+         * 文本向量的权重方案：tfidf 或 bm25
+         */
+        private String textWeighting = "tfidf";
+
+        /**
+         * 价格相似度核函数：ratio（按平均价格的相对差）或 log（对数价格距离）
+         */
+        private String priceKernel = "ratio";
+
+        /**
+         * log 价格核函数中相似度降为 0 的价格倍数
+         */
+        private double priceMaxRatio = 10.0;
+    }
+
+    @Data
+    public static class ColdStart {
+        /**
+         * 每个用户分群预先计算的推荐列表长度
+         */
+        private int listSize = 50;
+
+        /**
+         * 每个分群选取的种子商品数量
+         */
+        private int seedSize = 10;
+
+        /**
+         * 用户标签 -> 偏好的商品类别ID（标签：male、female、student、general）
+         */
+        private Map<String, List<Integer>> segmentCategories = new LinkedHashMap<>();
+
+        /**
+         * 没有匹配到任何类别时使用的通用类别
+         */
+        private List<Integer> defaultCategories = new ArrayList<>();
+    }
+
+    @Data
+    public static class Incremental {
+        /**
+         * 是否根据新订单、新收藏增量更新协同过滤模型
+         */
+        private boolean enabled = true;
+
+        /**
+         * 行为事件队列容量，队列满时丢弃事件，等待全量重建
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * 单批最多合并处理的事件数
+         */
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class Behavior {
+        /**
+         * 用户行为数据缓存时间（毫秒）
+         */
+        private long cacheTtlMs = 30000;
+
+        /**
+         * 最多缓存的用户数
+         */
+        private int cacheMaxEntries = 10000;
+    }
+
+    @Data
+    public static class Catalog {
+        /**
+         * 在售商品目录的定时刷新间隔（毫秒）
+         */
+        private long refreshIntervalMs = 60000;
+    }
+
+    @Data
+    public static class Hybrid {
+        /**
+         * 协同过滤、基于内容两路推荐各自的超时时间（毫秒），超时的一路被丢弃，另一路结果按满权重返回
+         */
+        private long branchTimeoutMs = 800;
+
+        /**
+         * 三路推荐（协同过滤、基于内容、热门）并行计算的线程数
+         */
+        private int fanoutThreads = 8;
+
+        /**
+         * 并行计算任务队列容量，队列满时该路推荐按缺失处理（不在请求线程中计算）
+         */
+        private int fanoutQueueCapacity = 200;
+
+        /**
+         * 热门商品在混合推荐中的权重；协同过滤没有结果（如新用户）时，热门商品接替协同过滤的权重
+         */
+        private double trendingWeight = 0.1;
+    }
+
+    @Data
+    public static class Trending {
+        /**
+         * 推荐使用的统计窗口：1h、24h 或 7d
+         */
+        private String window = "24h";
+
+        /**
+         * 窗口合并结果的缓存时间（毫秒）
+         */
+        private long windowRefreshMs = 60000;
+
+        /**
+         * 每件销量的热度权重
+         */
+        private double purchaseWeight = 1.0;
+
+        /**
+         * 每次收藏的热度权重
+         */
+        private double favoriteWeight = 0.5;
+    }
+
+    @Data
+    public static class Precompute {
+        /**
+         * 是否为活跃用户预计算混合推荐结果（关闭时每次请求实时计算）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 每个用户预计算的推荐列表长度，请求的 topK 超过该值时实时计算
+         */
+        private int listSize = 50;
+
+        /**
+         * 预计算结果在Redis中的过期时间（毫秒）
+         */
+        private long resultTtlMs = 3600000;
+
+        /**
+         * 活跃用户窗口（毫秒），窗口内访问过推荐或产生过行为的用户参与预计算
+         */
+        private long activeWindowMs = 86400000;
+
+        /**
+         * 每轮最多预计算的活跃用户数
+         */
+        private int maxUsers = 5000;
+
+        /**
+         * 预计算任务队列容量，队列满时丢弃任务
+         */
+        private int queueCapacity = 10000;
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * 每批处理的用户数：每批一次查库加载行为数据，算完立即写出
+         */
+        private int chunkSize = 200;
+
+        /**
+         * 批量推荐的并行打分线程数
+         */
+        private int threads = 4;
+
+        /**
+         * 单次请求最多包含的用户数
+         */
+        private int maxUsers = 100000;
+
+        /**
+         * 每个用户最多返回的推荐数量，超出时拒绝请求
+         */
+        private int maxTopK = 100;
+    }
+
+    @Data
+    public static class Diagnostics {
+        /**
+         * 相似度矩阵诊断导出目录
+         */
+        private String dumpDir = "./temp/recommend";
+    }
+}
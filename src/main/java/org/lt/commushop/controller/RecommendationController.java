@@ -5,14 +5,26 @@ import io.swagger.annotations.ApiOperation;
 import org.lt.commushop.common.Result;
 import org.lt.commushop.domain.Hander.RecommendItem;
 import org.lt.commushop.domain.entity.Product;
+import org.lt.commushop.domain.vo.RebuildJobVO;
 import org.lt.commushop.domain.vo.RecommendedProduct;
 import org.lt.commushop.service.IProductService;
+import org.lt.commushop.service.UtilsService.BatchRecommendationService;
 import org.lt.commushop.service.UtilsService.ContentBasedService;
 import org.lt.commushop.service.UtilsService.HybridRecommendationService;
 import org.lt.commushop.service.UtilsService.ItemBasedCFService;
+import org.lt.commushop.service.UtilsService.RebuildJobService;
+import org.lt.commushop.service.UtilsService.RecommendDiagnosticsService;
+import org.lt.commushop.service.UtilsService.SimilarityModelStore;
+import org.lt.commushop.service.UtilsService.TrendingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -32,14 +44,21 @@ public class RecommendationController {
     private HybridRecommendationService hybridRecommendationService;
     @Autowired
     private IProductService productService;
+    @Autowired
+    private RecommendDiagnosticsService recommendDiagnosticsService;
+    @Autowired
+    private RebuildJobService rebuildJobService;
+    @Autowired
+    private TrendingService trendingService;
+    @Autowired
+    private BatchRecommendationService batchRecommendationService;
 
     // 基于协同过滤的接口
-    @ApiOperation("强制重新计算协同过滤相似度矩阵")
+    @ApiOperation(value = "强制重新计算协同过滤相似度矩阵", notes = "后台异步执行，返回任务ID，通过 /recommend/rebuild/jobs/{jobId} 查询进度")
     @GetMapping("/cf/recalculate")
-    public Result<String> recalculateCFSimilarity() {
+    public Result<RebuildJobVO> recalculateCFSimilarity() {
         try {
-            itemBasedCFService.calculateAndStoreSimilarityMatrix();
-            return Result.success("协同过滤相似度矩阵重新计算完成");
+            return Result.success(rebuildJobService.submit(RebuildJobService.TYPE_CF), "协同过滤相似度矩阵重建任务已提交");
         } catch (Exception e) {
             return Result.error("重新计算相似度矩阵失败：" + e.getMessage());
         }
@@ -76,17 +95,63 @@ public class RecommendationController {
     }
 
     // 基于内容的接口
-    @ApiOperation("强制重新计算基于内容的相似度矩阵")
+    @ApiOperation(value = "强制重新计算基于内容的相似度矩阵", notes = "后台异步执行，返回任务ID，通过 /recommend/rebuild/jobs/{jobId} 查询进度")
     @GetMapping("/content/recalculate")
-    public Result<String> recalculateContentSimilarity() {
+    public Result<RebuildJobVO> recalculateContentSimilarity() {
         try {
-            contentBasedService.calculateAndStoreContentSimilarityMatrix();
-            return Result.success("基于内容的相似度矩阵重新计算完成");
+            return Result.success(rebuildJobService.submit(RebuildJobService.TYPE_CONTENT), "基于内容的相似度矩阵重建任务已提交");
         } catch (Exception e) {
             return Result.error("重新计算相似度矩阵失败：" + e.getMessage());
         }
     }
 
+    // 重建任务管理接口
+    @ApiOperation("查询最近的相似度矩阵重建任务")
+    @GetMapping("/rebuild/jobs")
+    public Result<List<RebuildJobVO>> listRebuildJobs() {
+        return Result.success(rebuildJobService.list());
+    }
+
+    @ApiOperation(value = "查询相似度矩阵重建任务进度", notes = "包含进度百分比、已处理行数、耗时以及完成后的模型统计")
+    @GetMapping("/rebuild/jobs/{jobId}")
+    public Result<RebuildJobVO> getRebuildJob(@PathVariable String jobId) {
+        try {
+            return Result.success(rebuildJobService.get(jobId));
+        } catch (Exception e) {
+            return Result.error("查询重建任务失败：" + e.getMessage());
+        }
+    }
+
+    @ApiOperation(value = "查询相似度模型版本", notes = "current 为当前生效的全量构建版本，revision 为其上已发布的增量补丁修订号，retained 为Redis中保留的全量构建版本（新到旧），pinned 表示已回滚、暂停增量更新")
+    @GetMapping("/model/versions")
+    public Result<SimilarityModelStore.ModelVersions> getModelVersions(@RequestParam(defaultValue = "cf") String type) {
+        try {
+            return Result.success(rebuildJobService.versions(type));
+        } catch (Exception e) {
+            return Result.error("查询模型版本失败：" + e.getMessage());
+        }
+    }
+
+    @ApiOperation(value = "回滚相似度模型到上一次全量构建", notes = "只切换版本指针，各节点在下一次刷新间隔内生效；下一次全量构建前暂停增量更新")
+    @PostMapping("/model/rollback")
+    public Result<Long> rollbackModel(@RequestParam(defaultValue = "cf") String type) {
+        try {
+            return Result.success(rebuildJobService.rollback(type), "相似度模型已回滚");
+        } catch (Exception e) {
+            return Result.error("回滚相似度模型失败：" + e.getMessage());
+        }
+    }
+
+    @ApiOperation(value = "取消相似度矩阵重建任务", notes = "取消后不会写入新模型，已进入保存阶段的任务无法取消")
+    @PostMapping("/rebuild/jobs/{jobId}/cancel")
+    public Result<RebuildJobVO> cancelRebuildJob(@PathVariable String jobId) {
+        try {
+            return Result.success(rebuildJobService.cancel(jobId), "已请求取消");
+        } catch (Exception e) {
+            return Result.error("取消重建任务失败：" + e.getMessage());
+        }
+    }
+
     @ApiOperation(value = "获取基于内容的个性化商品推荐", notes = "基于用户标签和商品特征")
     @GetMapping("/content/products/{userId}")
     public Result<List<RecommendedProduct>> getContentBasedRecommendations(
@@ -119,6 +184,30 @@ public class RecommendationController {
 
 
 
+    @ApiOperation(value = "获取热门商品", notes = "按滑动窗口内的销量与收藏数排序，window 可选 1h、24h、7d")
+    @GetMapping("/trending")
+    public Result<List<RecommendedProduct>> getTrendingProducts(
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(defaultValue = "10") Integer topK) {
+        try {
+            List<RecommendItem> recommendItems = trendingService.trending(TrendingService.Window.of(window), topK);
+            List<Integer> productIds = recommendItems.stream()
+                    .map(RecommendItem::getProductId)
+                    .collect(Collectors.toList());
+            Map<Integer, Product> productMap = productIds.isEmpty() ? Collections.emptyMap()
+                    : productService.listByIds(productIds).stream()
+                    .collect(Collectors.toMap(Product::getProductId, p -> p));
+            List<RecommendedProduct> recommendations = recommendItems.stream()
+                    .map(item -> RecommendedProduct.fromProduct(
+                            productMap.get(item.getProductId()),
+                            item.getScore()))
+                    .collect(Collectors.toList());
+            return Result.success(recommendations, "获取热门商品成功");
+        } catch (Exception e) {
+            return Result.error("获取热门商品失败：" + e.getMessage());
+        }
+    }
+
     // 可选：用于测试的接口
     @ApiOperation("获取相似度矩阵(测试用)")
     @GetMapping("/test/similarity-matrix")
@@ -136,6 +225,18 @@ public class RecommendationController {
             return Result.error("获取相似度矩阵失败：" + e.getMessage());
         }
     }
+    @ApiOperation(value = "导出相似度矩阵诊断文件", notes = "按等间隔抽样导出gzip压缩的近邻列表，sampleSize<=0 时导出全部")
+    @PostMapping("/diagnostics/dump")
+    public Result<String> dumpSimilarityMatrix(
+            @RequestParam(defaultValue = "cf") String type,
+            @RequestParam(defaultValue = "100") Integer sampleSize) {
+        try {
+            return Result.success(recommendDiagnosticsService.dumpSimilarityModel(type, sampleSize), "导出成功");
+        } catch (Exception e) {
+            return Result.error("导出相似度矩阵失败：" + e.getMessage());
+        }
+    }
+
     @ApiOperation(value = "获取混合推荐商品", notes = "结合协同过滤和基于内容的推荐结果")
     @GetMapping("/hybrid/products/{userId}")
     public Result<List<RecommendedProduct>> getHybridRecommendations(
@@ -149,4 +250,23 @@ public class RecommendationController {
             return Result.error("获取推荐商品失败：" + e.getMessage());
         }
     }
+
+    @ApiOperation(value = "批量获取混合推荐", notes = "请求体为用户ID列表（JSON数组或逗号、换行分隔），按NDJSON逐行流式返回，每行一个用户的推荐商品ID与分数")
+    @PostMapping("/hybrid/products/batch")
+    public ResponseEntity<?> getBatchHybridRecommendations(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "10") Integer topK) {
+        int[] userIds;
+        try {
+            batchRecommendationService.checkTopK(topK);
+            // 用户ID在请求线程中读完，响应体由异步线程写出
+            userIds = batchRecommendationService.readUserIds(request.getInputStream());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Result.error("批量推荐失败：" + e.getMessage()));
+        }
+        StreamingResponseBody body = out -> batchRecommendationService.stream(userIds, topK, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 }
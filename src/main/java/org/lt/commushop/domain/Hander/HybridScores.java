@@ -0,0 +1,17 @@
+package org.lt.commushop.domain.Hander;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 混合推荐计算结果
+ * complete 为 false 表示有分支超时或失败、本次只用了其余分支的结果，这样的结果不写入推荐结果缓存
+ */
+@Data
+@AllArgsConstructor
+public class HybridScores {
+    private List<RecommendItem> items;
+    private boolean complete;
+}
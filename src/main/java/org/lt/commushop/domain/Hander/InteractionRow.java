@@ -0,0 +1,17 @@
+package org.lt.commushop.domain.Hander;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户-商品行为的精简行（只含构建相似度矩阵所需的列），用于流式读取
+ */
+@Data
+public class InteractionRow {
+    private Integer productId;
+    private Integer userId;
+    private Integer amount;
+    private LocalDateTime behaviorTime; //下单时间或收藏时间
+    private Integer recordId; //订单商品ID，收藏为 null
+}
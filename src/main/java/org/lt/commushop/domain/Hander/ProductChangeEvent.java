@@ -0,0 +1,21 @@
+package org.lt.commushop.domain.Hander;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 商品变更事件
+ * 由商品上架、修改、删除发布，基于内容的推荐据此增量更新相似度模型
+ */
+@Data
+@AllArgsConstructor
+public class ProductChangeEvent {
+    public enum Type {
+        CREATED, //新增
+        UPDATED, //修改
+        DELETED  //删除（含软删除）
+    }
+
+    private Type type;
+    private Integer productId;
+}
@@ -0,0 +1,14 @@
+package org.lt.commushop.domain.Hander;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 相似度模型全量重建完成事件
+ * 由协同过滤、基于内容的全量构建发布，预计算推荐结果据此刷新
+ */
+@Data
+@AllArgsConstructor
+public class RecommendModelRebuiltEvent {
+    private String modelKey;
+}
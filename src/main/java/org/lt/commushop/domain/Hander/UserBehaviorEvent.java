@@ -0,0 +1,27 @@
+package org.lt.commushop.domain.Hander;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户行为变更事件
+ * 由下单、收藏、评价等写操作发布，推荐系统据此做增量更新、失效用户行为缓存
+ */
+@Data
+@AllArgsConstructor
+public class UserBehaviorEvent {
+    public enum Type {
+        PURCHASE, //购买
+        FAVORITE, //收藏
+        RATING    //评价
+    }
+
+    private Type type;
+    private Integer userId;
+    private Integer productId;
+    private int amount; //购买数量，收藏为1，评价为评分
+    private LocalDateTime time;
+    private Integer recordId; //行为记录ID：购买为订单商品ID（order_products 自增主键），其他行为为 null
+}
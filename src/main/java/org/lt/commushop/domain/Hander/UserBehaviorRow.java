@@ -0,0 +1,22 @@
+package org.lt.commushop.domain.Hander;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 单个用户的行为明细行（购买/收藏/评价合并查询的结果）
+ */
+@Data
+public class UserBehaviorRow {
+    public static final String PURCHASE = "P"; //购买
+    public static final String FAVORITE = "F"; //收藏
+    public static final String RATING = "R";   //评价
+
+    private Integer userId; //用户ID，仅批量查询有值
+    private String behaviorType; //行为类型：P/F/R
+    private Integer productId;
+    private Integer amount; //购买数量，仅购买行为有值
+    private Integer score; //评分，仅评价行为有值
+    private LocalDateTime behaviorTime; //收藏/评价时间
+}
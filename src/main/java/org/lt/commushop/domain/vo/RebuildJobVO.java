@@ -0,0 +1,38 @@
+package org.lt.commushop.domain.vo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 相似度矩阵重建任务状态
+ */
+@Data
+public class RebuildJobVO {
+    //任务ID
+    private String jobId;
+    //模型类型：cf / content
+    private String type;
+    //状态：QUEUED / RUNNING / SUCCEEDED / FAILED / CANCELLED
+    private String status;
+    //当前阶段
+    private String phase;
+    //行计算进度百分比
+    private Double progress;
+    //已处理行数
+    private Integer processedRows;
+    //总行数
+    private Integer totalRows;
+    //提交时间
+    private LocalDateTime submitTime;
+    //开始执行时间，排队中为空
+    private LocalDateTime startTime;
+    //已耗时（毫秒），结束后为总耗时；排队中为空
+    private Long elapsedMs;
+    //完成后模型中的商品数
+    private Integer productCount;
+    //完成后模型中的近邻条目数
+    private Long entryCount;
+    //失败原因
+    private String message;
+}
@@ -1,6 +1,12 @@
 package org.lt.commushop.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+import org.lt.commushop.domain.Hander.InteractionRow;
 import org.lt.commushop.domain.entity.Collection;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
@@ -14,5 +20,12 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 @Mapper
 public interface CollectionMapper extends BaseMapper<Collection> {
-
+    /**
+     * 流式读取全部收藏行为（只读 product_id, user_id, collection_time）
+     * fetchSize = Integer.MIN_VALUE 使 MySQL 驱动逐行推送结果，不在内存中缓存整张表
+     */
+    @Select("SELECT product_id, user_id, 1 AS amount, collection_time AS behavior_time FROM collection")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(InteractionRow.class)
+    void streamFavorites(ResultHandler<InteractionRow> handler);
 }
@@ -2,9 +2,23 @@ package org.lt.commushop.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
-import org.lt.commushop.domain.entity.Order;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+import org.lt.commushop.domain.Hander.InteractionRow;
 import org.lt.commushop.domain.entity.OrderProducts;
 
 @Mapper
 public interface OrderProductsMapper extends BaseMapper<OrderProducts> {
+    /**
+     * 流式读取全部购买行为（只读 product_id, user_id, amount、订单商品ID，以及所属订单的下单时间）
+     * fetchSize = Integer.MIN_VALUE 使 MySQL 驱动逐行推送结果，不在内存中缓存整张表
+     */
+    @Select("SELECT op.product_id, op.user_id, op.amount, o.create_time AS behavior_time, op.orderproduct_id AS record_id " +
+            "FROM order_products op LEFT JOIN order_all o ON o.order_code = op.order_code")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(InteractionRow.class)
+    void streamPurchases(ResultHandler<InteractionRow> handler);
 }
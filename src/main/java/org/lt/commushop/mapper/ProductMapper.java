@@ -1,9 +1,12 @@
 package org.lt.commushop.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
 import org.lt.commushop.domain.entity.Product;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.List;
+
 /**
  * <p>
  *  Mapper 接口
@@ -14,5 +17,9 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 @Mapper
 public interface ProductMapper extends BaseMapper<Product> {
-
+    /**
+     * 查询所有未删除商品的ID（推荐系统的在售商品目录）
+     */
+    @Select("SELECT product_id FROM product WHERE is_deleted IS NULL OR is_deleted <> 1")
+    List<Integer> selectLiveProductIds();
 }
@@ -0,0 +1,43 @@
+package org.lt.commushop.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.lt.commushop.domain.Hander.UserBehaviorRow;
+
+import java.util.List;
+
+/**
+ * 推荐用的用户行为查询
+ */
+@Mapper
+public interface UserBehaviorMapper {
+    /**
+     * 一次往返查出某个用户的全部购买、收藏、评价记录
+     */
+    @Select("SELECT 'P' AS behavior_type, product_id, amount, NULL AS score, NULL AS behavior_time " +
+            "FROM order_products WHERE user_id = #{userId} " +
+            "UNION ALL " +
+            "SELECT 'F', product_id, NULL, NULL, collection_time FROM collection WHERE user_id = #{userId} " +
+            "UNION ALL " +
+            "SELECT 'R', product_id, NULL, evaluation_score, evaluation_time FROM evaluation WHERE user_id = #{userId}")
+    List<UserBehaviorRow> selectByUserId(@Param("userId") Integer userId);
+
+    /**
+     * 批量推荐用：一次往返查出一批用户的全部行为记录，结果带 user_id 供调用方按用户分组
+     */
+    @Select({
+        "<script>",
+        "SELECT user_id, 'P' AS behavior_type, product_id, amount, NULL AS score, NULL AS behavior_time",
+        "FROM order_products WHERE user_id IN",
+        "<foreach item='id' collection='userIds' open='(' separator=',' close=')'>#{id}</foreach>",
+        "UNION ALL",
+        "SELECT user_id, 'F', product_id, NULL, NULL, collection_time FROM collection WHERE user_id IN",
+        "<foreach item='id' collection='userIds' open='(' separator=',' close=')'>#{id}</foreach>",
+        "UNION ALL",
+        "SELECT user_id, 'R', product_id, NULL, evaluation_score, evaluation_time FROM evaluation WHERE user_id IN",
+        "<foreach item='id' collection='userIds' open='(' separator=',' close=')'>#{id}</foreach>",
+        "</script>"
+    })
+    List<UserBehaviorRow> selectByUserIds(@Param("userIds") List<Integer> userIds);
+}
@@ -0,0 +1,219 @@
+package org.lt.commushop.service.UtilsService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.RecommendItem;
+import org.lt.commushop.domain.Hander.UserBehaviorData;
+import org.lt.commushop.exception.BusinessException;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * 批量混合推荐（营销推送、邮件等离线场景）
+ * 相似度模型每次请求只加载一次；用户按 chunk-size 分批，每批行为数据一次查库，
+ * 批内用户在批量线程池中并行打分，算完一批立即按输入顺序写出一批 NDJSON 行，
+ * 因此内存占用只与批大小有关，与请求的用户总数无关
+ */
+@Slf4j
+@Service
+public class BatchRecommendationService {
+    @Autowired
+    private HybridRecommendationService hybridRecommendationService;
+    @Autowired
+    private ItemBasedCFService itemBasedCFService;
+    @Autowired
+    private ContentBasedService contentBasedService;
+    @Autowired
+    private TrendingService trendingService;
+    @Autowired
+    private UserBehaviorLoader userBehaviorLoader;
+    @Autowired
+    private ProductCatalog productCatalog;
+    @Autowired
+    private RecommendProperties recommendProperties;
+    @Autowired
+    private ExecutorService recommendBatchExecutor;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 从请求体读取用户ID：支持 JSON 数组（[1,2,3]）以及逗号、空白或换行分隔的纯文本
+     */
+    public int[] readUserIds(InputStream in) throws IOException {
+        int maxUsers = recommendProperties.getBatch().getMaxUsers();
+        int[] ids = new int[64];
+        int count = 0;
+        long current = -1;
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (c >= '0' && c <= '9') {
+                    current = (current < 0 ? 0 : current * 10) + (c - '0');
+                    if (current > Integer.MAX_VALUE) {
+                        throw new BusinessException("用户ID超出范围");
+                    }
+                    continue;
+                }
+                if (c != ',' && c != '[' && c != ']' && !Character.isWhitespace(c)) {
+                    throw new BusinessException("用户ID列表格式错误，只支持JSON数组或逗号、换行分隔的数字");
+                }
+                if (current >= 0) {
+                    if (count == maxUsers) {
+                        throw new BusinessException("单次最多为 " + maxUsers + " 个用户批量推荐");
+                    }
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = (int) current;
+                    current = -1;
+                }
+            }
+        }
+        if (current >= 0) {
+            if (count == maxUsers) {
+                throw new BusinessException("单次最多为 " + maxUsers + " 个用户批量推荐");
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count + 1);
+            }
+            ids[count++] = (int) current;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * 校验每个用户的推荐数量：须在 1 到 recommend.batch.max-top-k 之间，需在开始写出响应前调用
+     * @throws BusinessException 超出范围
+     */
+    public void checkTopK(Integer topK) {
+        int maxTopK = recommendProperties.getBatch().getMaxTopK();
+        if (topK == null || topK < 1 || topK > maxTopK) {
+            throw new BusinessException("topK 须在 1 到 " + maxTopK + " 之间");
+        }
+    }
+
+    /**
+     * 为一批用户计算混合推荐并以 NDJSON 写出，每个用户一行：
+     * {"userId":1,"items":[{"productId":2,"score":0.8}]}，单个用户失败时该行为 {"userId":1,"error":"..."}
+     */
+    public void stream(int[] userIds, int topK, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        // 1. 两个相似度模型整个请求只加载一次
+        SimilarityModel cfModel = itemBasedCFService.getSimilarityModel();
+        SimilarityModel cbModel = contentBasedService.getContentSimilarityModel();
+        TrendingService.Window window = TrendingService.Window.of(recommendProperties.getTrending().getWindow());
+        int chunkSize = Math.max(1, recommendProperties.getBatch().getChunkSize());
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (int from = 0; from < userIds.length; from += chunkSize) {
+            List<Integer> chunk = new ArrayList<>(chunkSize);
+            for (int i = from; i < Math.min(from + chunkSize, userIds.length); i++) {
+                chunk.add(userIds[i]);
+            }
+            // 2. 整批用户的行为数据一次查库
+            Map<Integer, UserBehaviorData> behaviors = userBehaviorLoader.loadAll(chunk);
+            // 3. 热门列表每批读取一次，长度足够扣除批内任一用户已有的商品
+            List<RecommendItem> trendingItems = trendingItems(window, topK * 2 + maxBehaviorCount(behaviors));
+
+            // 4. 批内用户并行打分
+            List<CompletableFuture<String>> lines = new ArrayList<>(chunk.size());
+            for (Integer userId : chunk) {
+                UserBehaviorData behaviorData = behaviors.get(userId);
+                lines.add(CompletableFuture.supplyAsync(
+                        () -> toLine(userId, recommend(userId, behaviorData, cfModel, cbModel, trendingItems, topK)),
+                        recommendBatchExecutor));
+            }
+            // 5. 按输入顺序写出本批结果，写完即释放
+            for (int i = 0; i < lines.size(); i++) {
+                String line;
+                try {
+                    line = lines.get(i).join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    log.error("用户userId = {} 批量推荐失败：{}", chunk.get(i), cause.getMessage(), cause);
+                    line = errorLine(chunk.get(i), cause.getMessage());
+                }
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+        }
+        log.info("批量推荐完成：{} 个用户，耗时 {} ms", userIds.length, System.currentTimeMillis() - start);
+    }
+
+    private List<RecommendItem> recommend(Integer userId, UserBehaviorData behaviorData,
+                                          SimilarityModel cfModel, SimilarityModel cbModel,
+                                          List<RecommendItem> trendingItems, int topK) {
+        return hybridRecommendationService.computeHybridScores(userId, behaviorData, cfModel, cbModel, trendingItems, topK)
+                .getItems().stream()
+                .filter(item -> productCatalog.isLive(item.getProductId()))
+                .limit(topK)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 热门商品列表，Redis不可用时返回 null（按缺失分支处理，结果标记为不完整），不影响另外两路
+     */
+    private List<RecommendItem> trendingItems(TrendingService.Window window, int topN) {
+        try {
+            return trendingService.trending(window, topN);
+        } catch (Exception e) {
+            log.warn("批量推荐读取热门商品失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static int maxBehaviorCount(Map<Integer, UserBehaviorData> behaviors) {
+        int max = 0;
+        for (UserBehaviorData data : behaviors.values()) {
+            max = Math.max(max, data.getBehaviors().size());
+        }
+        return max;
+    }
+
+    private String toLine(Integer userId, List<RecommendItem> items) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("userId", userId);
+        line.put("items", items);
+        try {
+            return objectMapper.writeValueAsString(line);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private String errorLine(Integer userId, String message) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("userId", userId);
+        line.put("error", message);
+        try {
+            return objectMapper.writeValueAsString(line);
+        } catch (IOException e) {
+            return "{\"userId\":" + userId + ",\"error\":\"\"}";
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.UserBehaviorEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户行为事件队列（进程内）
+ * 写操作发布的行为事件先入队，由单个后台线程批量取出并增量更新协同过滤模型，
+ * 不阻塞下单、收藏等请求线程
+ */
+@Slf4j
+@Service
+public class BehaviorEventQueue {
+    @Autowired
+    private ItemBasedCFService itemBasedCFService;
+    @Autowired
+    private RecommendProperties recommendProperties;
+
+    private BlockingQueue<UserBehaviorEvent> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        RecommendProperties.Incremental incremental = recommendProperties.getIncremental();
+        queue = new LinkedBlockingQueue<>(incremental.getQueueCapacity());
+        if (!incremental.isEnabled()) {
+            log.info("推荐模型增量更新未开启");
+            return;
+        }
+        running = true;
+        worker = new Thread(this::drainLoop, "recommend-behavior-worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * 接收行为事件：有事务时在提交后入队，无事务时立即入队
+     * 队列满时丢弃并告警，由每日全量重建兜底
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBehaviorEvent(UserBehaviorEvent event) {
+        // 协同过滤模型只使用购买和收藏行为
+        if (!running || event.getType() == UserBehaviorEvent.Type.RATING) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            log.warn("行为事件队列已满，丢弃事件：{}", event);
+        }
+    }
+
+    private void drainLoop() {
+        int batchSize = recommendProperties.getIncremental().getBatchSize();
+        List<UserBehaviorEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                UserBehaviorEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                itemBasedCFService.applyBehaviorEvents(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("增量更新推荐模型失败，{} 条行为将在下次全量重建时生效：{}", batch.size(), e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
@@ -1,24 +1,49 @@
 package org.lt.commushop.service.UtilsService;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.dictionary.stopword.CoreStopWordDictionary;
+import com.hankcs.hanlp.seg.common.Term;
 import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
 import org.lt.commushop.domain.Hander.ProductBehavior;
+import org.lt.commushop.domain.Hander.ProductChangeEvent;
 import org.lt.commushop.domain.Hander.RecommendItem;
+import org.lt.commushop.domain.Hander.RecommendModelRebuiltEvent;
 import org.lt.commushop.domain.Hander.UserBehaviorData;
 import org.lt.commushop.domain.entity.*;
-import org.lt.commushop.domain.entity.Collection;
 import org.lt.commushop.mapper.ProductCategoryRelationshipMapper;
 import org.lt.commushop.mapper.UserMapper;
 import org.lt.commushop.service.*;
+import org.lt.commushop.service.UtilsService.recommend.BlendedKernel;
+import org.lt.commushop.service.UtilsService.recommend.BuildProgress;
+import org.lt.commushop.service.UtilsService.recommend.CandidateBuffer;
+import org.lt.commushop.service.UtilsService.recommend.CategoryIndex;
+import org.lt.commushop.service.UtilsService.recommend.CategoryJaccardKernel;
+import org.lt.commushop.service.UtilsService.recommend.ContentCandidateIndex;
+import org.lt.commushop.service.UtilsService.recommend.ContentFeatures;
+import org.lt.commushop.service.UtilsService.recommend.LogPriceKernel;
+import org.lt.commushop.service.UtilsService.recommend.NeighborList;
+import org.lt.commushop.service.UtilsService.recommend.ParallelRowBuilder;
+import org.lt.commushop.service.UtilsService.recommend.PriceRatioKernel;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityKernel;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
+import org.lt.commushop.service.UtilsService.recommend.TextKernel;
+import org.lt.commushop.service.UtilsService.recommend.TextVector;
+import org.lt.commushop.service.UtilsService.recommend.TfIdfVectorizer;
+import org.lt.commushop.service.UtilsService.recommend.TopKCollector;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import javax.annotation.Resource;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,204 +53,350 @@ public class ContentBasedService {
     @Autowired
     private IProductService productService;
     @Autowired
-    private IOrderProductsService orderProductsService;
+    private UserBehaviorLoader userBehaviorLoader;
     @Autowired
-    private ICollectionService collectionService;
-    @Autowired
-    private IEvaluationService evaluationService;
+    private ProductCatalog productCatalog;
     @Autowired
     private ProductCategoryRelationshipMapper productCategoryRelationshipMapper;
     @Autowired
     private UserMapper userMapper;
-    @Resource
-    private RedisTemplate<String, Map<Integer, Map<Integer, Double>>> redisTemplate;
-    private static final String CONTENT_SIMILARITY_MATRIX_KEY = "product:content:similarity:matrix";
-
-    // 特征权重配置
-    private static final double TEXT_SIMILARITY_WEIGHT = 0.6;  // 文本相似度权重
-    private static final double CATEGORY_SIMILARITY_WEIGHT = 0.3;  // 类别相似度权重
-    private static final double PRICE_SIMILARITY_WEIGHT = 0.1;  // 价格相似度权重
+    @Autowired
+    private RecommendProperties recommendProperties;
+    @Autowired
+    private ForkJoinPool similarityBuildPool;
+    @Autowired
+    private SimilarityModelStore similarityModelStore;
+    @Autowired
+    private ExecutorService similarityRebuildExecutor;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    public static final String CONTENT_SIMILARITY_MATRIX_KEY = "product:content:similarity:neighbors";
 
     // 推荐相关配置
     private static final double SIMILARITY_THRESHOLD = 0.1;  // 相似度阈值
     private static final int DEFAULT_RECOMMEND_SIZE = 10;  // 默认推荐数量
+
+    // 各用户分群的冷启动推荐列表，与生成它的相似度模型绑定，模型变化后在后台重算
+    private volatile ColdStartLists coldStartLists;
+    private final AtomicBoolean coldStartRefreshing = new AtomicBoolean();
+
+    // 最近一次全量构建的商品特征，供商品变更时增量更新；读写均在 featureLock 内进行
+    private LiveFeatures liveFeatures;
+    private final Object featureLock = new Object();
     /**
      * 计算并存储基于内容的商品相似度矩阵
      */
     public void calculateAndStoreContentSimilarityMatrix() {
+        calculateAndStoreContentSimilarityMatrix(new BuildProgress());
+    }
+
+    /**
+     * 计算并存储基于内容的商品相似度矩阵，通过 progress 上报进度、响应取消（取消时不写入Redis）
+     * @return 新构建的相似度模型
+     */
+    public SimilarityModel calculateAndStoreContentSimilarityMatrix(BuildProgress progress) {
+        synchronized (featureLock) {
+            return doCalculateAndStoreContentSimilarityMatrix(progress);
+        }
+    }
+
+    private SimilarityModel doCalculateAndStoreContentSimilarityMatrix(BuildProgress progress) {
         log.info("开始计算基于内容的商品相似度矩阵...");
 
-        //1. 获取所有商品
-        List<Product> products = productService.list();
-        Map<Integer,Map<Integer,Double>> similarityMatrix = new HashMap<>();
+        //1. 获取所有未删除的商品
+        progress.phase("提取商品特征");
+        LambdaQueryWrapper<Product> productWrapper = new LambdaQueryWrapper<>();
+        productWrapper.ne(Product::getIsDeleted, 1).or().isNull(Product::getIsDeleted);
+        List<Product> products = productService.list(productWrapper);
+
+        //2.一次性提取全部商品特征（分词 + TF-IDF、类别位图、价格），两两计算时不再重复分词或查库
+        LiveFeatures live = extractFeatures(products);
+        ContentFeatures features = live.features;
+
+        //3.生成候选：MinHash/LSH 同桶或同类别的商品才做精确打分
+        progress.phase("生成候选");
+        RecommendProperties.Content content = recommendProperties.getContent();
+        ContentCandidateIndex candidateIndex = content.isLshEnabled()
+                ? ContentCandidateIndex.build(features, content.getLshBands(), content.getLshRows())
+                : null;
+        live.candidateIndex = candidateIndex;
+
+        //4.计算商品间的相似度（按行划分到构建线程池并行计算，每行写入各自位置）
+        RecommendProperties.Build build = recommendProperties.getBuild();
+        int neighborSize = recommendProperties.getModel().getNeighborSize();
+        SimilarityKernel<ContentFeatures> kernel = buildKernel();
+        long start = System.currentTimeMillis();
+        progress.phase("计算相似度");
+        List<NeighborList> rows = ParallelRowBuilder.build(
+                build.isParallel() ? similarityBuildPool : null,
+                features.size(), build.getGrainSize(), CandidateBuffer::new,
+                (row, buffer) -> calculateSimilarityRow(features, candidateIndex, kernel, row, buffer, neighborSize),
+                progress);
+        int[] productIds = new int[features.size()];
+        for (int row = 0; row < features.size(); row++) {
+            productIds[row] = features.productId(row);
+        }
+        SimilarityModel model = SimilarityModel.of(productIds, rows.toArray(new NeighborList[0]));
+        log.info("基于内容的商品相似度模型构建完成，耗时 {} ms（LSH：{}），近邻条目数 {}（如需查看矩阵内容请使用诊断导出接口）",
+                System.currentTimeMillis() - start, content.isLshEnabled(), model.entryCount());
+
+        //5.存储相似度模型到Redis
+        progress.phase("保存模型");
+        similarityModelStore.save(CONTENT_SIMILARITY_MATRIX_KEY, model);
+        liveFeatures = live;
+        refreshColdStartLists(model);
+        log.info("基于内容的商品相似度矩阵计算完成，共处理{}个商品", products.size());
+        eventPublisher.publishEvent(new RecommendModelRebuiltEvent(CONTENT_SIMILARITY_MATRIX_KEY));
+        return model;
+    }
+
+    /**
+     * 商品上架、修改、删除后，在后台线程中增量更新基于内容的相似度模型
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChange(ProductChangeEvent event) {
+        try {
+            similarityRebuildExecutor.execute(() -> {
+                try {
+                    applyProductChange(event);
+                } catch (Exception e) {
+                    log.error("增量更新基于内容的相似度模型失败，事件：{}", event, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("商品变更事件未能提交，等待每日全量重建：{}", event);
+        }
+    }
+
+    /**
+     * 增量应用一个商品变更
+     * 1. 先把该商品从所有近邻列表中移除（删除即到此为止，不需要商品特征）；
+     * 2. 新增/修改时用已拟合的词表重新提取它的特征；
+     * 3. 只重算它自己的一行，并把新分数写回候选商品的近邻列表（对称位置上的列）。
+     * 本节点还没有全量构建过（没有拟合好的词表）时，新增/修改直接跳过，由下一次全量构建兜底，
+     * 不在变更线程上临时全量构建；所有修改都在Redis最新发布的模型上进行。
+     */
+    public void applyProductChange(ProductChangeEvent event) {
+        synchronized (featureLock) {
+            Integer productId = event.getProductId();
+            Product product = event.getType() == ProductChangeEvent.Type.DELETED ? null : productService.getById(productId);
+
+            //1.商品已删除：从特征和所有近邻列表中移除该商品
+            if (product == null || Integer.valueOf(1).equals(product.getIsDeleted())) {
+                LiveFeatures live = liveFeatures;
+                Integer row = live == null ? null : live.rows.remove(productId);
+                if (row != null) {
+                    live.features.remove(row);
+                }
+                if (similarityModelStore.update(CONTENT_SIMILARITY_MATRIX_KEY, latest -> latest.remove(productId))) {
+                    log.info("商品productId = {} 已从基于内容的相似度模型中移除", productId);
+                    refreshColdStartLists(similarityModelStore.load(CONTENT_SIMILARITY_MATRIX_KEY));
+                }
+                return;
+            }
+            if (liveFeatures == null) {
+                log.info("本节点尚未全量构建基于内容的相似度模型，商品productId = {} 的变更将在下次全量构建时生效", productId);
+                return;
+            }
+            LiveFeatures live = liveFeatures;
+            ContentFeatures features = live.features;
+            Integer row = live.rows.get(productId);
+
+            //2.重新提取该商品的特征
+            live.categoryIndex.replace(productId,
+                    productCategoryRelationshipMapper.selectCategoryIdsByProductId(productId));
+            TextVector name = live.nameVectorizer.transform(product.getProductName());
+            TextVector description = live.descVectorizer.transform(product.getProductDesc());
+            long[] categories = live.categoryIndex.bitsOf(productId);
+            double price = product.getGroupPrice().doubleValue();
+            if (row == null) {
+                row = features.append(productId, name, description, categories, price);
+                live.rows.put(productId, row);
+            } else {
+                features.set(row, productId, name, description, categories, price);
+            }
+            if (live.candidateIndex != null) {
+                live.candidateIndex.add(row, name, description, categories);
+            }
 
-        //2.计算商品间的相似度
-        for(Product product1 : products){
-            Map<Integer,Double> similarities = new HashMap<>();
-            for(Product product2 : products){
-                if(product1.getProductId().equals(product2.getProductId())){
-                    similarities.put(product2.getProductId(),1.0);
+            //3.重算该商品的行
+            int neighborSize = recommendProperties.getModel().getNeighborSize();
+            int self = row;
+            TopKCollector topK = new TopKCollector(neighborSize);
+            Map<Integer, Float> similarities = new LinkedHashMap<>();
+            CandidateBuffer buffer = new CandidateBuffer();
+            collectCandidates(features, live.candidateIndex, self, buffer);
+            double[] scores = buffer.scores();
+            buildKernel().score(features, self, buffer.rows(), buffer.size(), scores);
+            for (int k = 0; k < buffer.size(); k++) {
+                double similarity = scores[k];
+                if (similarity < SIMILARITY_THRESHOLD) {
                     continue;
                 }
-                //计算综合相似度
-                double similarity = calculateProductSimilarity(product1, product2);
-                if(similarity >= SIMILARITY_THRESHOLD){
-                    similarities.put(product2.getProductId(),similarity);
+                int otherId = features.productId(buffer.rowAt(k));
+                topK.offer(otherId, similarity);
+                similarities.put(otherId, (float) similarity);
+            }
+            NeighborList neighbors = topK.toNeighborList();
+
+            //4.在最新模型上移除旧分数，写入该行并修补候选商品的列
+            if (!similarityModelStore.update(CONTENT_SIMILARITY_MATRIX_KEY, latest -> {
+                SimilarityModel updated = latest.remove(productId);
+                Map<Integer, NeighborList> updates = new HashMap<>();
+                for (Map.Entry<Integer, Float> entry : similarities.entrySet()) {
+                    NeighborList column = updated.neighbors(entry.getKey());
+                    updates.put(entry.getKey(), (column == null ? NeighborList.EMPTY : column)
+                            .upsert(productId, entry.getValue(), neighborSize));
                 }
+                updates.put(productId, neighbors);
+                return updated.patch(updates);
+            })) {
+                return;
             }
-            similarityMatrix.put(product1.getProductId(), similarities);
+            log.info("商品productId = {} 的内容特征已增量更新，{} 个近邻列表被修改", productId, similarities.size() + 1);
+            refreshColdStartLists(similarityModelStore.load(CONTENT_SIMILARITY_MATRIX_KEY));
         }
-        //打印相似度矩阵
-        log.info("基于内容的商品相似度矩阵：\n{}", formatSimilarityMatrix(similarityMatrix));
-
-        //3.存储相似度矩阵到Redis
-        redisTemplate.opsForValue().set(CONTENT_SIMILARITY_MATRIX_KEY, similarityMatrix);
-        log.info("基于内容的商品相似度矩阵计算完成，共处理{}个商品", products.size());
     }
 
     /**
-     * 格式化相似度矩阵为可读的字符串
+     * 提取商品特征：名称、描述分别拟合 TF-IDF 或 BM25 向量（HanLP 分词），类别一次性加载为位图
      */
-    private String formatSimilarityMatrix(Map<Integer, Map<Integer, Double>> matrix) {
-        if (matrix == null || matrix.isEmpty()) {
-            return "矩阵为空";
+    private LiveFeatures extractFeatures(List<Product> products) {
+        List<String> names = new ArrayList<>(products.size());
+        List<String> descriptions = new ArrayList<>(products.size());
+        for (Product product : products) {
+            names.add(product.getProductName());
+            descriptions.add(product.getProductDesc());
         }
-
-        StringBuilder sb = new StringBuilder();
-        // 获取所有商品ID并排序
-        List<Integer> productIds = new ArrayList<>(matrix.keySet());
-        Collections.sort(productIds);
-
-        // 打印列头
-        sb.append(String.format("%6s", "ID"));
-        for (Integer id : productIds) {
-            sb.append(String.format("%6d", id));
+        LiveFeatures live = new LiveFeatures();
+        live.nameVectorizer = new TfIdfVectorizer(ContentBasedService::tokenize, textWeighting());
+        live.descVectorizer = new TfIdfVectorizer(ContentBasedService::tokenize, textWeighting());
+        TextVector[] nameVectors = live.nameVectorizer.fitTransform(names);
+        TextVector[] descVectors = live.descVectorizer.fitTransform(descriptions);
+        live.categoryIndex = loadCategoryIndex();
+
+        ContentFeatures features = new ContentFeatures(products.size());
+        for (int row = 0; row < products.size(); row++) {
+            Product product = products.get(row);
+            features.set(row, product.getProductId(), nameVectors[row], descVectors[row],
+                    live.categoryIndex.bitsOf(product.getProductId()), product.getGroupPrice().doubleValue());
+            live.rows.put(product.getProductId(), row);
         }
-        sb.append("\n");
+        live.features = features;
+        log.info("商品特征提取完成：名称词表 {} 个词，描述词表 {} 个词",
+                live.nameVectorizer.vocabularySize(), live.descVectorizer.vocabularySize());
+        return live;
+    }
 
-        // 打印矩阵内容
-        for (Integer rowId : productIds) {
-            sb.append(String.format("%6d", rowId));
-            for (Integer colId : productIds) {
-                Double similarity = matrix.get(rowId).getOrDefault(colId, 0.0);
-                sb.append(String.format("%6.2f", similarity));
+    /**
+     * HanLP 分词，去掉停用词和标点，英文统一小写
+     */
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (Term term : HanLP.segment(text)) {
+            if (!CoreStopWordDictionary.shouldInclude(term)) {
+                continue;
+            }
+            String word = term.word.trim().toLowerCase();
+            if (!word.isEmpty()) {
+                tokens.add(word);
             }
-            sb.append("\n");
         }
-        return sb.toString();
+        return tokens;
     }
 
     /**
-     * 计算两个商品的综合相似度
+     * 计算某个商品与候选商品的相似度，用有界小顶堆只保留最相似的 neighborSize 个
+     * 候选先收集到缓冲区，再由核函数整批打分
      */
-    private double calculateProductSimilarity(Product product1, Product product2) {
-        // 1. 计算文本相似度（商品名称和描述）
-        double textSimilarity = calculateTextSimilarity(product1, product2);
-
-        // 2. 计算类别相似度
-        double categorySimilarity = calculateCategorySimilarity(product1, product2);
-
-        // 3. 计算价格相似度
-        double priceSimilarity = calculatePriceSimilarity(product1, product2);
-
-        // 4. 计算加权综合相似度
-        return TEXT_SIMILARITY_WEIGHT * textSimilarity +
-                CATEGORY_SIMILARITY_WEIGHT * categorySimilarity +
-                PRICE_SIMILARITY_WEIGHT * priceSimilarity;
+    private NeighborList calculateSimilarityRow(ContentFeatures features, ContentCandidateIndex candidateIndex,
+                                                SimilarityKernel<ContentFeatures> kernel,
+                                                int row, CandidateBuffer buffer, int neighborSize) {
+        collectCandidates(features, candidateIndex, row, buffer);
+        double[] scores = buffer.scores();
+        kernel.score(features, row, buffer.rows(), buffer.size(), scores);
+        TopKCollector topK = new TopKCollector(neighborSize);
+        for (int k = 0; k < buffer.size(); k++) {
+            if (scores[k] >= SIMILARITY_THRESHOLD) {
+                topK.offer(features.productId(buffer.rowAt(k)), scores[k]);
+            }
+        }
+        return topK.toNeighborList();
     }
+
     /**
-     * 计算文本相似度（使用简单的关键词匹配方式，后续可以改进为TF-IDF或Word2Vec）
+     * 收集某一行的候选行（不含自身和已删除的行），candidateIndex 为 null 时取全部商品
      */
-    private double calculateTextSimilarity(Product product1, Product product2) {
-        // 将名称和描述分别处理
-        String name1 = product1.getProductName().toLowerCase();
-        String name2 = product2.getProductName().toLowerCase();
-        String desc1 = product1.getProductDesc() != null ? product1.getProductDesc().toLowerCase() : "";
-        String desc2 = product2.getProductDesc() != null ? product2.getProductDesc().toLowerCase() : "";
-
-        // 按字符分割（适用于中文）
-        Set<String> nameChars1 = name1.chars().mapToObj(ch -> String.valueOf((char)ch)).collect(Collectors.toSet());
-        Set<String> nameChars2 = name2.chars().mapToObj(ch -> String.valueOf((char)ch)).collect(Collectors.toSet());
-        Set<String> descChars1 = desc1.chars().mapToObj(ch -> String.valueOf((char)ch)).collect(Collectors.toSet());
-        Set<String> descChars2 = desc2.chars().mapToObj(ch -> String.valueOf((char)ch)).collect(Collectors.toSet());
-
-        // 分别计算名称和描述的相似度
-        double nameSimilarity = calculateJaccardSimilarity(nameChars1, nameChars2);
-        double descSimilarity = calculateJaccardSimilarity(descChars1, descChars2);
-
-        // 名称相似度权重更高
-        return nameSimilarity * 0.7 + descSimilarity * 0.3;
+    private void collectCandidates(ContentFeatures features, ContentCandidateIndex candidateIndex,
+                                   int row, CandidateBuffer buffer) {
+        if (candidateIndex == null) {
+            buffer.reset(features.size());
+            for (int other = 0; other < features.size(); other++) {
+                if (other != row && features.isLive(other)) {
+                    buffer.add(other);
+                }
+            }
+            return;
+        }
+        candidateIndex.collect(row, buffer);
+        buffer.retainLive(features);
     }
 
-    private double calculateJaccardSimilarity(Set<String> set1, Set<String> set2) {
-        if (set1.isEmpty() && set2.isEmpty()) return 1.0;
-        if (set1.isEmpty() || set2.isEmpty()) return 0.0;
-
-        Set<String> union = new HashSet<>(set1);
-        union.addAll(set2);
-
-        Set<String> intersection = new HashSet<>(set1);
-        intersection.retainAll(set2);
-
-        return (double) intersection.size() / union.size();
-    }
     /**
-     * 计算类别相似度
+     * 按配置组合综合相似度核函数：文本（名称 0.7 + 描述 0.3）、类别 Jaccard、价格
      */
-    private double calculateCategorySimilarity(Product product1, Product product2) {
-        // 获取商品1的所有类别
-        LambdaQueryWrapper<ProductCategoryRelationship> wrapper1 = new LambdaQueryWrapper<>();
-        wrapper1.eq(ProductCategoryRelationship::getProductId, product1.getProductId());
-        List<ProductCategoryRelationship> categories1 = productCategoryRelationshipMapper.selectList(wrapper1);
+    private SimilarityKernel<ContentFeatures> buildKernel() {
+        RecommendProperties.Content content = recommendProperties.getContent();
+        SimilarityKernel<ContentFeatures> priceKernel = "log".equalsIgnoreCase(content.getPriceKernel())
+                ? new LogPriceKernel(content.getPriceMaxRatio())
+                : new PriceRatioKernel();
+        return new BlendedKernel<ContentFeatures>()
+                .add(new TextKernel(0.7, 0.3), content.getTextWeight())
+                .add(new CategoryJaccardKernel(), content.getCategoryWeight())
+                .add(priceKernel, content.getPriceWeight());
+    }
 
-        // 获取商品2的所有类别
-        LambdaQueryWrapper<ProductCategoryRelationship> wrapper2 = new LambdaQueryWrapper<>();
-        wrapper2.eq(ProductCategoryRelationship::getProductId, product2.getProductId());
-        List<ProductCategoryRelationship> categories2 = productCategoryRelationshipMapper.selectList(wrapper2);
+    /**
+     * 文本向量的权重方案
+     */
+    private TfIdfVectorizer.Weighting textWeighting() {
+        return "bm25".equalsIgnoreCase(recommendProperties.getContent().getTextWeighting())
+                ? TfIdfVectorizer.Weighting.BM25
+                : TfIdfVectorizer.Weighting.TFIDF;
+    }
 
-        // 如果任一商品没有类别，返回0
-        if (categories1.isEmpty() || categories2.isEmpty()) {
-            return 0.0;
+    /**
+     * 一次性加载全部商品-类别关系，构建类别位图索引（只查询一次，替代逐对查库）
+     */
+    private CategoryIndex loadCategoryIndex() {
+        LambdaQueryWrapper<ProductCategoryRelationship> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(ProductCategoryRelationship::getProductId, ProductCategoryRelationship::getCategoryId);
+        CategoryIndex index = new CategoryIndex();
+        for (ProductCategoryRelationship relationship : productCategoryRelationshipMapper.selectList(wrapper)) {
+            if (relationship.getProductId() != null && relationship.getCategoryId() != null) {
+                index.add(relationship.getProductId(), relationship.getCategoryId());
+            }
         }
-
-        // 计算共同类别的数量
-        Set<Integer> categoryIds1 = categories1.stream()
-                .map(ProductCategoryRelationship::getCategoryId)
-                .collect(Collectors.toSet());
-        Set<Integer> categoryIds2 = categories2.stream()
-                .map(ProductCategoryRelationship::getCategoryId)
-                .collect(Collectors.toSet());
-
-        // 计算Jaccard相似度：交集大小 / 并集大小
-        Set<Integer> intersection = new HashSet<>(categoryIds1);
-        intersection.retainAll(categoryIds2);
-
-        Set<Integer> union = new HashSet<>(categoryIds1);
-        union.addAll(categoryIds2);
-
-        return union.isEmpty() ? 0.0 : (double) intersection.size() / union.size();
+        log.info("商品类别索引加载完成，共 {} 个类别", index.categoryCount());
+        return index;
     }
     /**
-     * 计算价格相似度
+     * 获取相似度模型，Redis中不存在时触发单飞重建，等待超时返回 null
      */
-    private double calculatePriceSimilarity(Product product1, Product product2) {
-        double price1 = product1.getGroupPrice().doubleValue();
-        double price2 = product2.getGroupPrice().doubleValue();
-
-        // 使用价格差异比例计算相似度
-        double priceDiff = Math.abs(price1 - price2);
-        double avgPrice = (price1 + price2) / 2.0;
-
-        // 如果价格差异在平均价格的50%以内，则认为相似
-        double similarity = Math.max(0, 1 - (priceDiff / avgPrice));
-        return similarity;
+    public SimilarityModel getContentSimilarityModel() {
+        SimilarityModel model = similarityModelStore.loadOrBuild(CONTENT_SIMILARITY_MATRIX_KEY, this::calculateAndStoreContentSimilarityMatrix);
+        if (model == null) {
+            log.warn("基于内容的相似度模型尚未就绪（正在重建或重建失败）");
+        }
+        return model;
     }
 
     /**
-     * 获取相似度矩阵
+     * 获取相似度矩阵（由近邻列表展开，仅供调试展示）
      */
     public Map<Integer, Map<Integer, Double>> getContentSimilarityMatrix() {
-        return redisTemplate.opsForValue().get(CONTENT_SIMILARITY_MATRIX_KEY);
+        SimilarityModel model = similarityModelStore.load(CONTENT_SIMILARITY_MATRIX_KEY);
+        return model != null ? model.toMatrix() : null;
     }
 
     /**
@@ -233,16 +404,27 @@ public class ContentBasedService {
      */
     public List<RecommendItem> recommendProducts(Integer userId, int topK) {
         //1.获取用户行为数据
-        UserBehaviorData userData = getUserBehaviorData(userId);
+        UserBehaviorData userData = userBehaviorLoader.load(userId);
+        return recommendProducts(userId, userData, getContentSimilarityModel(), topK);
+    }
+
+    /**
+     * 使用已加载的行为数据和相似度模型推荐（批量推荐时模型和行为数据由调用方统一加载）
+     */
+    public List<RecommendItem> recommendProducts(Integer userId, UserBehaviorData userData,
+                                                 SimilarityModel similarityModel, int topK) {
+        if (similarityModel == null) {
+            return new ArrayList<>();
+        }
         // 判断是新用户还是老用户
         boolean isNewUser = isNewUser(userData);
 
         if (isNewUser) {
             log.info("为新用户{}推荐商品", userId);
-            return recommendForNewUser(userId, topK);
+            return recommendForNewUser(userId, similarityModel, topK);
         } else {
             log.info("为老用户{}推荐商品", userId);
-            return recommendForExistingUser(userId, userData, topK);
+            return recommendForExistingUser(userId, userData, similarityModel, topK);
         }
     }
     /**
@@ -260,17 +442,10 @@ public class ContentBasedService {
     /**
      * 给老用户基于内容推荐
      */
-    private  List<RecommendItem> recommendForExistingUser(Integer userId, UserBehaviorData userData, Integer topK) {
-        // 获取相似度矩阵
-        Map<Integer,Map<Integer,Double>> similarityMatrix = getContentSimilarityMatrix();
-        if (similarityMatrix == null) {
-              log.warn("相似度矩阵未找到，需要重新计算");
-            calculateAndStoreContentSimilarityMatrix();
-            similarityMatrix = getContentSimilarityMatrix();
-        }
-
+    private  List<RecommendItem> recommendForExistingUser(Integer userId, UserBehaviorData userData,
+                                                          SimilarityModel similarityModel, Integer topK) {
         // 计算推荐分数
-        Map<Integer, Double> recommendScores = calculateRecommendScores(userId, userData, similarityMatrix);
+        Map<Integer, Double> recommendScores = calculateRecommendScores(userId, userData, similarityModel);
 
         // 排序并返回推荐结果
        return recommendScores.entrySet().stream()
@@ -282,31 +457,87 @@ public class ContentBasedService {
     /**
      * 给新用户基于内容推荐（基于用户的种子信息）
      */
-    private List<RecommendItem> recommendForNewUser(Integer userId, Integer topK) {
+    private List<RecommendItem> recommendForNewUser(Integer userId, SimilarityModel similarityModel, Integer topK) {
         // 获取用户信息
         User user = userMapper.selectById(userId);
         if (user == null) {
             return new ArrayList<>();
         }
-        //用户标签 -> 匹配的商品类别 -> 产品
+        //用户标签 -> 用户分群 -> 预先计算好的分群推荐列表
+        List<RecommendItem> segmentList = getColdStartLists(similarityModel).get(segmentOf(getUserTags(user)));
+        if (segmentList == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(segmentList.subList(0, Math.min(topK, segmentList.size())));
+    }
 
-        // 获取用户标签
-        Set<String> userTags = getUserTags(user);
-        // 获取匹配的商品类别
-        Set<Integer> targetCategories = getTargetCategories(userTags);
-        // 获取种子商品
-        List<Integer> seedProducts = getSeedProducts(targetCategories);
-        // 从相似度矩阵中获取推荐
+    /**
+     * 获取各用户分群的冷启动推荐列表（请求线程只做一次读取，不查库、不加锁）
+     * 列表在全量构建和本节点增量更新之后由后台线程预先计算；模型在别处发生变化（如从其他节点刷新快照）时，
+     * 本次仍返回上一次发布的列表，同时提交一次后台重算。本节点尚未计算过时返回空 Map
+     */
+    private Map<String, List<RecommendItem>> getColdStartLists(SimilarityModel similarityModel) {
+        ColdStartLists current = coldStartLists;
+        if (current == null || current.model != similarityModel) {
+            refreshColdStartListsAsync(similarityModel);
+        }
+        return current != null ? current.lists : Collections.emptyMap();
+    }
 
-        // 获取相似度矩阵
-        Map<Integer,Map<Integer,Double>> similarityMatrix = getContentSimilarityMatrix();
-        if (similarityMatrix == null) {
-            log.warn("相似度矩阵未找到，需要重新计算");
-            calculateAndStoreContentSimilarityMatrix();
-            similarityMatrix = getContentSimilarityMatrix();
+    /**
+     * 在模型后台线程池中重算冷启动推荐列表，同一时间只提交一个
+     */
+    private void refreshColdStartListsAsync(SimilarityModel similarityModel) {
+        if (!coldStartRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            similarityRebuildExecutor.execute(() -> {
+                try {
+                    refreshColdStartLists(similarityModel);
+                } catch (Exception e) {
+                    log.warn("新用户冷启动推荐列表重算失败：{}", e.getMessage());
+                } finally {
+                    coldStartRefreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            coldStartRefreshing.set(false);
+            log.warn("新用户冷启动推荐列表重算任务未能提交");
         }
-        // 基于种子商品获取推荐
-        return getRecommendationsFromSeeds(seedProducts, similarityMatrix, topK);
+    }
+
+    /**
+     * 按相似度模型重算各用户分群的冷启动推荐列表并整体发布
+     * 分群只由性别和邮箱类型决定（最多 3 × 3 种），只在后台线程中调用
+     */
+    private void refreshColdStartLists(SimilarityModel similarityModel) {
+        if (similarityModel == null) {
+            return;
+        }
+        int listSize = recommendProperties.getColdStart().getListSize();
+        Map<String, List<RecommendItem>> lists = new HashMap<>();
+        for (String gender : Arrays.asList("male", "female", null)) {
+            for (String emailType : Arrays.asList("student", "general", null)) {
+                Set<String> tags = new HashSet<>();
+                if (gender != null) tags.add(gender);
+                if (emailType != null) tags.add(emailType);
+                List<Integer> seedProducts = getSeedProducts(getTargetCategories(tags));
+                lists.put(segmentOf(tags), getRecommendationsFromSeeds(seedProducts, similarityModel, listSize));
+            }
+        }
+        coldStartLists = new ColdStartLists(similarityModel, lists);
+        log.info("新用户冷启动推荐列表已重新计算，共 {} 个用户分群", lists.size());
+    }
+
+    /**
+     * 用户标签组合成分群键，如 "female+student"，无标签为 "default"
+     */
+    private static String segmentOf(Set<String> userTags) {
+        if (userTags.isEmpty()) {
+            return "default";
+        }
+        return userTags.stream().sorted().collect(Collectors.joining("+"));
     }
 
     /**
@@ -335,48 +566,20 @@ public class ContentBasedService {
      *
      */
     private Set<Integer> getTargetCategories(Set<String> userTags) {
+        RecommendProperties.ColdStart coldStart = recommendProperties.getColdStart();
         Set<Integer> categories = new HashSet<>();
 
-        // 男性用户偏好
-        if (userTags.contains("male")) {
-            categories.addAll(Arrays.asList(
-                9,  // 电子产品
-                14, // 汽车服务
-                11  // 健康保健
-            ));
-        }
-
-        // 女性用户偏好
-        if (userTags.contains("female")) {
-            categories.addAll(Arrays.asList(
-                4,  // 服装鞋帽
-                5,  // 美容护肤
-                12  // 节日礼品
-            ));
-        }
-
-        // 学生用户偏好
-        if (userTags.contains("student")) {
-            categories.addAll(Arrays.asList(
-                8,  // 教育培训
-                13, // 即食食品
-                1   // 餐饮美食
-            ));
-        }
-
-        // 普通用户(general)偏好
-        if (userTags.contains("general")) {
-            categories.addAll(Arrays.asList(
-                2,  // 生鲜食品
-                3,  // 日用百货
-                6,  // 休闲娱乐
-                7   // 旅游出行
-            ));
+        // 各标签偏好的类别（application.yml 中 recommend.cold-start.segment-categories）
+        for (String tag : userTags) {
+            List<Integer> preferred = coldStart.getSegmentCategories().get(tag);
+            if (preferred != null) {
+                categories.addAll(preferred);
+            }
         }
 
         // 如果没有匹配到任何类别，返回一些通用类别
         if (categories.isEmpty()) {
-            categories.addAll(Arrays.asList(1, 2, 3, 13)); // 餐饮、生鲜、日用、即食
+            categories.addAll(coldStart.getDefaultCategories());
         }
 
         return categories;
@@ -392,7 +595,7 @@ public class ContentBasedService {
         // 查询目标类别的商品
         queryWrapper.in(ProductCategoryRelationship::getCategoryId, targetCategories);
         // 限制返回数量
-        queryWrapper.last("LIMIT 10");
+        queryWrapper.last("LIMIT " + recommendProperties.getColdStart().getSeedSize());
 
         // 获取商品ID列表
         return productCategoryRelationshipMapper.selectList(queryWrapper)
@@ -403,25 +606,27 @@ public class ContentBasedService {
 
     // 基于种子商品获取推荐
     private List<RecommendItem> getRecommendationsFromSeeds(List<Integer> seedProducts,
-                                                      Map<Integer, Map<Integer, Double>> similarityMatrix, Integer count) {
-        if (seedProducts == null || seedProducts.isEmpty() || similarityMatrix == null) {
+                                                      SimilarityModel similarityModel, Integer count) {
+        if (seedProducts == null || seedProducts.isEmpty() || similarityModel == null) {
             return new ArrayList<>();
         }
         // 存储所有候选商品的累计相似度
         Map<Integer,Double> candidateScores = new HashMap<>();
+        Set<Integer> seeds = new HashSet<>(seedProducts);
 
         //对每个种子商品
         for(Integer seedId : seedProducts){
-            //获取于该种子商品相似的所有商品（用于对相似值累加）
-            Map<Integer, Double> similarities = similarityMatrix.getOrDefault(seedId, new HashMap<>());
+            //获取与该种子商品最相似的近邻（用于对相似值累加）
+            NeighborList neighbors = similarityModel.neighbors(seedId);
+            if (neighbors == null) {
+                continue;
+            }
             //累加相似度分数
-            for(Map.Entry<Integer,Double> entry : similarities.entrySet()){
-                Integer candidateId = entry.getKey();//1:
-                Double similarity = entry.getValue();//{  // 手机1的相似商品3: 0.8,  // 手机3，相似度0.8 4: 0.6   // 耳机4，相似度0.6},
-
+            for(int k = 0; k < neighbors.size(); k++){
+                int candidateId = neighbors.idAt(k);
                 //排除种子商品自身
-                if(!seedProducts.contains(candidateId)){
-                    candidateScores.merge(candidateId,similarity,Double::sum);
+                if(!seeds.contains(candidateId)){
+                    candidateScores.merge(candidateId, (double) neighbors.scoreAt(k), Double::sum);
                 }
             }
         }
@@ -435,91 +640,33 @@ public class ContentBasedService {
     }
     /**
      * 计算推荐分数
+     * 只遍历用户历史商品的Top-N近邻，相似度对称，因此等价于以候选商品为行累加
      */
     private Map<Integer, Double> calculateRecommendScores(Integer userId, UserBehaviorData userData,
-                                                          Map<Integer, Map<Integer, Double>> similarityMatrix) {
+                                                          SimilarityModel similarityModel) {
         Map<Integer,Double> scores = new HashMap<>();
         Set<Integer> userItems = userData.getBehaviors().keySet();
-        //获取所有商品
-        List<Product> allProducts = productService.list();
-        for(Product product : allProducts){
-            Integer candidateItem = product.getProductId();
-            // 跳过用户已交互的商品
-            if (userItems.contains(candidateItem)) {
-                continue;
-            }
-            double score = 0.0;
-            Map<Integer, Double> similarities = similarityMatrix.get(candidateItem);
-            if (similarities == null) continue;
-
-            // 基于用户的历史行为计算推荐分数
-            for (Map.Entry<Integer, ProductBehavior> behaviorEntry : userData.getBehaviors().entrySet()) {
-                Integer userItem = behaviorEntry.getKey();
-                Double similarity = similarities.get(userItem);
-                if (similarity == null) continue;
-
-                ProductBehavior behavior = behaviorEntry.getValue();
-                double behaviorWeight = calculateBehaviorWeight(behavior);
-                score += similarity * behaviorWeight;
-            }
 
-            if (score > 0) {
-                scores.put(candidateItem, score);
+        // 基于用户的历史行为计算推荐分数
+        for (Map.Entry<Integer, ProductBehavior> behaviorEntry : userData.getBehaviors().entrySet()) {
+            NeighborList neighbors = similarityModel.neighbors(behaviorEntry.getKey());
+            if (neighbors == null) continue;
+            double behaviorWeight = calculateBehaviorWeight(behaviorEntry.getValue());
+            if (behaviorWeight == 0.0) continue;
+
+            for (int k = 0; k < neighbors.size(); k++) {
+                int candidateItem = neighbors.idAt(k);
+                // 跳过用户已交互的商品
+                // 只推荐仍在售的商品（内存目录，不查商品表）
+                if (userItems.contains(candidateItem) || !productCatalog.isLive(candidateItem)) {
+                    continue;
+                }
+                scores.merge(candidateItem, neighbors.scoreAt(k) * behaviorWeight, Double::sum);
             }
         }
+        scores.values().removeIf(score -> score <= 0);
         return scores;
     }
-    /**
-     * 获取用户行为数据
-     */
-    private UserBehaviorData getUserBehaviorData(Integer userId){
-        UserBehaviorData data = new UserBehaviorData();
-        LocalDateTime now = LocalDateTime.now();
-
-        //1.获取购买记录
-        LambdaQueryWrapper<OrderProducts> orderWrapper = new LambdaQueryWrapper<>();
-        orderWrapper.eq(OrderProducts::getUserId , userId);
-        List<OrderProducts> purchases = orderProductsService.list(orderWrapper);
-
-        //2.获取收藏记录
-        LambdaQueryWrapper<org.lt.commushop.domain.entity.Collection> collectionLambdaQueryWrapper = new LambdaQueryWrapper<>();
-        collectionLambdaQueryWrapper.eq(org.lt.commushop.domain.entity.Collection::getUserId , userId);
-        List<org.lt.commushop.domain.entity.Collection> collections = collectionService.list(collectionLambdaQueryWrapper);
-
-        //3.获取评分记录
-        LambdaQueryWrapper<Evaluation> evaluationLambdaQueryWrapper = new LambdaQueryWrapper<>();
-        evaluationLambdaQueryWrapper.eq(Evaluation::getUserId,userId);
-        List<Evaluation> evaluations = evaluationService.list(evaluationLambdaQueryWrapper);
-
-        //4.处理购买数据至data中
-        for(OrderProducts purchase : purchases){
-            ProductBehavior behavior = data.getBehaviors().computeIfAbsent(
-                    purchase.getProductId(),
-                    k -> new ProductBehavior()
-            );
-            behavior.setPurchaseCount(behavior.getPurchaseCount() + purchase.getAmount());
-        }
-
-        //5.处理收藏数据
-        for(Collection collection : collections){
-            ProductBehavior behavior = data.getBehaviors().computeIfAbsent(
-                    collection.getProductId(),
-                    k -> new ProductBehavior()
-            );
-            behavior.setFavorited(true);
-            behavior.setFavoriteTime(collection.getCollectionTime());
-        }
-        //6.处理评分数据
-        for(Evaluation evaluation : evaluations){
-            ProductBehavior behavior = data.getBehaviors().computeIfAbsent(
-                    evaluation.getProductId(),
-                    k -> new ProductBehavior()
-            );
-            behavior.setRating(evaluation.getEvaluationScore());
-        }
-        log.info("用户userId = {} 的行为数据：{}", userId, data);
-        return data;
-    }
 
     /**
      * 计算行为权重
@@ -569,5 +716,28 @@ public class ContentBasedService {
         }
     }
 
+    /**
+     * 全量构建时保留下来的特征状态：特征表、已拟合的词表、类别索引、候选索引以及商品ID到行号的映射
+     */
+    private static final class LiveFeatures {
+        ContentFeatures features;
+        TfIdfVectorizer nameVectorizer;
+        TfIdfVectorizer descVectorizer;
+        CategoryIndex categoryIndex;
+        ContentCandidateIndex candidateIndex;
+        final Map<Integer, Integer> rows = new HashMap<>();
+    }
+
+    /**
+     * 冷启动推荐列表及其对应的相似度模型
+     */
+    private static final class ColdStartLists {
+        final SimilarityModel model;
+        final Map<String, List<RecommendItem>> lists;
 
+        ColdStartLists(SimilarityModel model, Map<String, List<RecommendItem>> lists) {
+            this.model = model;
+            this.lists = lists;
+        }
+    }
 }
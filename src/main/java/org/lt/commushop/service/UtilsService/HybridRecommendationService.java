@@ -2,18 +2,30 @@ package org.lt.commushop.service.UtilsService;
 
 import lombok.extern.slf4j.Slf4j;
 import org.checkerframework.checker.units.qual.A;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.HybridScores;
 import org.lt.commushop.domain.Hander.RecommendItem;
+import org.lt.commushop.domain.Hander.UserBehaviorData;
 import org.lt.commushop.domain.entity.Product;
 import org.lt.commushop.domain.vo.RecommendedProduct;
 import org.lt.commushop.service.IProductOrderService;
 import org.lt.commushop.service.IProductService;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -26,45 +38,212 @@ public class HybridRecommendationService {
     private ContentBasedService contentBasedService;
     @Autowired
     private IProductService productService;
+    @Autowired
+    private ProductCatalog productCatalog;
+    @Autowired
+    private RecommendResultCache recommendResultCache;
+    @Autowired
+    private RecommendProperties recommendProperties;
+    @Autowired
+    private ExecutorService recommendFanoutExecutor;
+    @Autowired
+    private TrendingService trendingService;
+    @Autowired
+    private UserBehaviorLoader userBehaviorLoader;
 
     // 混合推荐权重配置
     private static final double CF_WEIGHT = 0.7;  // 协同过滤权重
     private static final double CB_WEIGHT = 0.3;  // 基于内容权重
+    /**
+     * 获取混合推荐商品
+     * 优先读取后台预计算的结果（见 {@link RecommendPrecomputeService}），未命中时实时计算并回写，
+     * 因此大促等高峰期间绝大多数请求只有一次Redis读取
+     */
     public List<RecommendedProduct> getHybridRecommendations(Integer userId, Integer topK) {
-        // 1. 获取两种推荐结果
-        List<RecommendItem> cfRecommendations = itemBasedCFService.recommendProducts(userId, topK * 2);
-        List<RecommendItem> cbRecommendations = contentBasedService.recommendProducts(userId, topK * 2);
+        RecommendProperties.Precompute precompute = recommendProperties.getPrecompute();
+        List<RecommendItem> items;
+        if (precompute.isEnabled() && topK <= precompute.getListSize()) {
+            recommendResultCache.touch(userId);
+            items = recommendResultCache.get(userId, precompute.getListSize());
+            if (items == null) {
+                log.info("用户userId = {} 没有预计算的推荐结果，实时计算", userId);
+                HybridScores scores = computeHybridScores(userId, precompute.getListSize());
+                items = scores.getItems();
+                // 有分支超时或失败时不回写，避免在TTL内一直返回降级结果
+                if (scores.isComplete() && !items.isEmpty()) {
+                    recommendResultCache.put(userId, items, precompute.getListSize());
+                }
+            }
+            // 预计算之后可能有商品下架，读取时过滤
+            items = items.stream()
+                    .filter(item -> productCatalog.isLive(item.getProductId()))
+                    .limit(topK)
+                    .collect(Collectors.toList());
+        } else {
+            items = computeHybridScores(userId, topK).getItems();
+        }
+        return toRecommendedProducts(items);
+    }
+
+    /**
+     * 实时计算混合推荐分数：融合协同过滤、基于内容与热门商品的结果，按分数降序取前 topK 个
+     * 用户行为数据只加载一次，三路推荐在并行线程池中同时计算、共用同一个截止时间，总耗时约为 max(CF, CB, 热门)；
+     * 某一路超时、失败或未能提交时丢弃该路并标记结果不完整，融合权重见 {@link #blend}
+     */
+    public HybridScores computeHybridScores(Integer userId, int topK) {
+        // 1. 三路共用同一份行为数据，避免同一用户的行为数据被重复查询
+        UserBehaviorData behaviorData = userBehaviorLoader.load(userId);
+        // 2. 并行获取三种推荐结果，三路共用同一个截止时间
+        CompletableFuture<List<RecommendItem>> cfFuture = submitBranch(
+                () -> itemBasedCFService.recommendProducts(userId, behaviorData,
+                        itemBasedCFService.getSimilarityModel(), topK * 2), "协同过滤", userId);
+        CompletableFuture<List<RecommendItem>> cbFuture = submitBranch(
+                () -> contentBasedService.recommendProducts(userId, behaviorData,
+                        contentBasedService.getContentSimilarityModel(), topK * 2), "基于内容", userId);
+        CompletableFuture<List<RecommendItem>> trendingFuture = submitBranch(
+                () -> trendingService.recommendProducts(behaviorData, topK * 2), "热门商品", userId);
+        long deadline = System.currentTimeMillis() + recommendProperties.getHybrid().getBranchTimeoutMs();
+        List<RecommendItem> cfRecommendations = awaitBranch(cfFuture, deadline, "协同过滤", userId);
+        List<RecommendItem> cbRecommendations = awaitBranch(cbFuture, deadline, "基于内容", userId);
+        List<RecommendItem> trendingRecommendations = awaitBranch(trendingFuture, deadline, "热门商品", userId);
+        return new HybridScores(blend(cfRecommendations, cbRecommendations, trendingRecommendations, topK),
+                cfRecommendations != null && cbRecommendations != null && trendingRecommendations != null);
+    }
+
+    /**
+     * 使用已加载的行为数据、模型和热门列表同步计算混合推荐分数（批量推荐用）
+     * 批量推荐在用户维度上并行，单个用户内不再扇出；某一路失败（热门列表读取失败时 trendingItems 传 null）
+     * 时与实时计算一样丢弃该路并标记结果不完整
+     */
+    public HybridScores computeHybridScores(Integer userId, UserBehaviorData behaviorData,
+                                                   SimilarityModel cfModel, SimilarityModel cbModel,
+                                                   List<RecommendItem> trendingItems, int topK) {
+        List<RecommendItem> cfRecommendations = null;
+        List<RecommendItem> cbRecommendations = null;
+        try {
+            cfRecommendations = itemBasedCFService.recommendProducts(userId, behaviorData, cfModel, topK * 2);
+        } catch (Exception e) {
+            log.error("用户userId = {} 的协同过滤推荐失败，本次不使用该路结果：{}", userId, e.getMessage(), e);
+        }
+        try {
+            cbRecommendations = contentBasedService.recommendProducts(userId, behaviorData, cbModel, topK * 2);
+        } catch (Exception e) {
+            log.error("用户userId = {} 的基于内容推荐失败，本次不使用该路结果：{}", userId, e.getMessage(), e);
+        }
+        List<RecommendItem> trendingRecommendations = trendingItems == null
+                ? null : TrendingService.excludeOwned(trendingItems, behaviorData, topK * 2);
+        return new HybridScores(blend(cfRecommendations, cbRecommendations, trendingRecommendations, topK),
+                cfRecommendations != null && cbRecommendations != null && trendingRecommendations != null);
+    }
+
+    /**
+     * 按权重融合三路推荐结果，按分数降序取前 topK 个；缺失的分支传 null
+     * 有结果的分支各分配一次权重：协同过滤 0.7、基于内容 0.3、热门商品为配置的 trending-weight，
+     * 协同过滤缺失或为空时热门商品再接替它的 0.7；最后按实际分配的权重之和归一化，
+     * 因此无论缺失哪些分支，各路权重之和都为1
+     */
+    private List<RecommendItem> blend(List<RecommendItem> cfRecommendations, List<RecommendItem> cbRecommendations,
+                                      List<RecommendItem> trendingRecommendations, int topK) {
+        // 1. 先给有结果的分支分配权重（null 与空列表同样视为缺失）：协同过滤缺失时由热门商品接替它的权重，
+        //    再按权重之和归一化，使融合分数的量级与缺失了哪些分支无关
+        boolean hasCf = cfRecommendations != null && !cfRecommendations.isEmpty();
+        boolean hasCb = cbRecommendations != null && !cbRecommendations.isEmpty();
+        boolean hasTrending = trendingRecommendations != null && !trendingRecommendations.isEmpty();
+        double cfWeight = hasCf ? CF_WEIGHT : 0.0;
+        double cbWeight = hasCb ? CB_WEIGHT : 0.0;
+        double trendingWeight = 0.0;
+        if (hasTrending) {
+            trendingWeight = recommendProperties.getHybrid().getTrendingWeight() + (hasCf ? 0.0 : CF_WEIGHT);
+        }
+        double totalWeight = cfWeight + cbWeight + trendingWeight;
+        if (totalWeight <= 0.0) {
+            return Collections.emptyList();
+        }
+        cfWeight /= totalWeight;
+        cbWeight /= totalWeight;
+        trendingWeight /= totalWeight;
+
         // 2. 合并推荐结果到一个Map
         Map<Integer, Double> hybridScores = new HashMap<>();
         // 处理协同过滤结果
-        for (RecommendItem item : cfRecommendations) {
+        for (RecommendItem item : cfRecommendations == null ? Collections.<RecommendItem>emptyList() : cfRecommendations) {
             hybridScores.merge(item.getProductId(),
-                    item.getScore() * CF_WEIGHT,
+                    item.getScore() * cfWeight,
                     Double::sum);
         }
         // 处理基于内容的结果
-        for (RecommendItem item : cbRecommendations) {
+        for (RecommendItem item : cbRecommendations == null ? Collections.<RecommendItem>emptyList() : cbRecommendations) {
+            hybridScores.merge(item.getProductId(),
+                    item.getScore() * cbWeight,
+                    Double::sum);
+        }
+        // 处理热门商品结果
+        for (RecommendItem item : trendingRecommendations == null ? Collections.<RecommendItem>emptyList() : trendingRecommendations) {
             hybridScores.merge(item.getProductId(),
-                    item.getScore() * CB_WEIGHT,
+                    item.getScore() * trendingWeight,
                     Double::sum);
         }
-        // 3. 获取排序后的商品ID和分数
-        List<Map.Entry<Integer, Double>> sortedEntries = hybridScores.entrySet().stream()
+        // 3. 按分数降序取前 topK 个
+        return hybridScores.entrySet().stream()
                 .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
                 .limit(topK)
+                .map(e -> new RecommendItem(e.getKey(), e.getValue()))
                 .collect(Collectors.toList());
-        // 4. 批量获取商品信息并转换为RecommendedProduct
-        List<Integer> productIds = sortedEntries.stream()
-                .map(Map.Entry::getKey)
+    }
+
+    /**
+     * 把一路推荐提交到并行线程池；线程池和队列都已满时不在请求线程中执行，返回 null 按缺失分支处理
+     */
+    private CompletableFuture<List<RecommendItem>> submitBranch(Supplier<List<RecommendItem>> branchTask,
+                                                                String branch, Integer userId) {
+        try {
+            return CompletableFuture.supplyAsync(branchTask, recommendFanoutExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("推荐并行线程池已满，用户userId = {} 本次不使用{}推荐结果", userId, branch);
+            return null;
+        }
+    }
+
+    /**
+     * 在截止时间前等待某一路推荐结果，未提交、超时或失败时返回 null
+     * 超时后只是不再等待：还在队列中的任务不会再执行，已开始执行的任务无法中断，会运行结束后丢弃结果
+     */
+    private List<RecommendItem> awaitBranch(CompletableFuture<List<RecommendItem>> future, long deadline,
+                                            String branch, Integer userId) {
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("用户userId = {} 的{}推荐超时，本次不使用该路结果", userId, branch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("用户userId = {} 的{}推荐失败，本次不使用该路结果：{}", userId, branch, e.getCause().getMessage(), e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * 批量获取商品信息并转换为RecommendedProduct
+     */
+    private List<RecommendedProduct> toRecommendedProducts(List<RecommendItem> items) {
+        List<Integer> productIds = items.stream()
+                .map(RecommendItem::getProductId)
                 .collect(Collectors.toList());
+        if (productIds.isEmpty()) {
+            return Collections.emptyList();
+        }
         // 获取商品信息
         Map<Integer, Product> productMap = productService.listByIds(productIds).stream()
                 .collect(Collectors.toMap(Product::getProductId, p -> p));
-        // 5. 组装最终结果
-        return sortedEntries.stream()
-                .map(entry -> RecommendedProduct.fromProduct(
-                        productMap.get(entry.getKey()),
-                        entry.getValue()))
+        // 组装最终结果
+        return items.stream()
+                .map(item -> RecommendedProduct.fromProduct(
+                        productMap.get(item.getProductId()),
+                        item.getScore()))
                 .collect(Collectors.toList());
     }
 
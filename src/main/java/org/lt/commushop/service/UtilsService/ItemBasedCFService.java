@@ -1,26 +1,37 @@
 package org.lt.commushop.service.UtilsService;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.InteractionRow;
 import org.lt.commushop.domain.Hander.ProductBehavior;
 import org.lt.commushop.domain.Hander.RecommendItem;
+import org.lt.commushop.domain.Hander.RecommendModelRebuiltEvent;
 import org.lt.commushop.domain.Hander.UserBehaviorData;
-import org.lt.commushop.domain.entity.Collection;
-import org.lt.commushop.domain.entity.Evaluation;
-import org.lt.commushop.domain.entity.OrderProducts;
-import org.lt.commushop.service.ICollectionService;
-import org.lt.commushop.service.IEvaluationService;
-import org.lt.commushop.service.IOrderProductsService;
+import org.lt.commushop.domain.Hander.UserBehaviorEvent;
+import org.lt.commushop.mapper.CollectionMapper;
+import org.lt.commushop.mapper.OrderProductsMapper;
+import org.lt.commushop.service.UtilsService.recommend.AdjustedCosineKernel;
+import org.lt.commushop.service.UtilsService.recommend.BlendedKernel;
+import org.lt.commushop.service.UtilsService.recommend.BuildProgress;
+import org.lt.commushop.service.UtilsService.recommend.CoOccurrenceIndex;
+import org.lt.commushop.service.UtilsService.recommend.CosineKernel;
+import org.lt.commushop.service.UtilsService.recommend.JaccardKernel;
+import org.lt.commushop.service.UtilsService.recommend.NeighborList;
+import org.lt.commushop.service.UtilsService.recommend.ParallelRowBuilder;
+import org.lt.commushop.service.UtilsService.recommend.RowAccumulator;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityKernel;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
+import org.lt.commushop.service.UtilsService.recommend.TimeDecay;
+import org.lt.commushop.service.UtilsService.recommend.TopKCollector;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.Resource;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,21 +39,31 @@ import java.util.stream.Collectors;
 @EnableScheduling
 public class ItemBasedCFService {
     @Autowired
-    private IOrderProductsService orderProductsService;
+    private UserBehaviorLoader userBehaviorLoader;
 
     @Autowired
-    private ICollectionService collectionService;
+    private ProductCatalog productCatalog;
 
-   @Autowired
-   private IEvaluationService evaluationService;
+    @Autowired
+    private OrderProductsMapper orderProductsMapper;
+
+    @Autowired
+    private CollectionMapper collectionMapper;
+
+    @Autowired
+    private RecommendProperties recommendProperties;
+
+    @Autowired
+    private ForkJoinPool similarityBuildPool;
 
 
+    @Autowired
+    private SimilarityModelStore similarityModelStore;
 
-    @Resource
-    private RedisTemplate<String, Map<Integer, Map<Integer, Double>>> redisTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-    private static final String SIMILARITY_MATRIX_KEY = "product:similarity:matrix";
-    private static final double ALPHA = 0.7; // 购买相似度权重
+    public static final String SIMILARITY_MATRIX_KEY = "product:similarity:neighbors";
 
     // 行为权重常量
     private static final double PURCHASE_WEIGHT = 1.0;    // 购买行为权重
@@ -50,299 +71,286 @@ public class ItemBasedCFService {
     private static final double RATING_WEIGHT = 0.8;      // 评分行为权重
     private static final double TIME_DECAY_FACTOR = 0.1;  // 时间衰减因子
 
+    // 最近一次全量构建的倒排索引，供增量更新使用；读写均在 indexLock 内进行
+    private CoOccurrenceIndex liveIndex;
+    // 构建 liveIndex 时流式读到的最大订单商品ID，ID不大于它的购买行为已计入索引
+    private long purchaseWatermark;
+    private final Object indexLock = new Object();
 
     /**
      * 计算并存储商品相似度矩阵
+     * 基于用户-商品倒排索引，只对至少有一个共同购买/收藏用户的商品对累加共现，
+     * 代价与行为记录条数成正比，而不是商品数的平方
      */
     public void calculateAndStoreSimilarityMatrix() {
-        log.info("开始计算商品相似度矩阵...");
-
-        // 1. 获取购买矩阵和收藏矩阵
-        Map<Integer, Map<Integer, Integer>> purchaseMatrix = buildProductUserMatrix();
-        Map<Integer, Map<Integer, Integer>> favoriteMatrix = buildFavoriteMatrix();
-
-        // 2. 计算相似度矩阵
-        Map<Integer, Map<Integer, Double>> similarityMatrix = new HashMap<>();
-        Set<Integer> allProductIds = new HashSet<>(purchaseMatrix.keySet());
-        allProductIds.addAll(favoriteMatrix.keySet());
-
-         List<Integer> sortedProductIds = new ArrayList<>(allProductIds);
-        Collections.sort(sortedProductIds);  // 对商品ID排序，使输出更有序
-        log.info("共有 {} 个不同商品需要计算相似度", sortedProductIds.size());
+        calculateAndStoreSimilarityMatrix(new BuildProgress());
+    }
 
-        // 构建并打印表头
-        StringBuilder header = new StringBuilder("\n商品ID\t");
-        for (Integer id : sortedProductIds) {
-            header.append(String.format("P%-8d", id));
+    /**
+     * 计算并存储商品相似度矩阵，通过 progress 上报进度、响应取消（取消时不写入Redis）
+     * @return 新构建的相似度模型
+     */
+    public SimilarityModel calculateAndStoreSimilarityMatrix(BuildProgress progress) {
+        synchronized (indexLock) {
+            return doCalculateAndStoreSimilarityMatrix(progress);
         }
-        log.info(header.toString());
-
-        int processedCount = 0;
-        for (Integer product1 : sortedProductIds) {
-            Map<Integer, Double> similarities = new HashMap<>();
-            StringBuilder row = new StringBuilder();
-            row.append(String.format("P%-7d", product1));
-
-            for (Integer product2 : sortedProductIds) {
-                double similarity;
-                if (product1.equals(product2)) {
-                    similarity = 1.0;
-                } else {
-                    // 计算购买相似度
-                    double cosineSim = calculateCosineSimilarity(
-                            purchaseMatrix.getOrDefault(product1, new HashMap<>()),
-                            purchaseMatrix.getOrDefault(product2, new HashMap<>())
-                    );
-
-                    // 计算收藏相似度
-                    double jaccardSim = calculateJaccardSimilarity(
-                            favoriteMatrix.getOrDefault(product1, new HashMap<>()),
-                            favoriteMatrix.getOrDefault(product2, new HashMap<>())
-                    );
-
-                    // 融合相似度
-                    similarity = ALPHA * cosineSim + (1 - ALPHA) * jaccardSim;
-                    similarities.put(product2, similarity);
-                }
+    }
 
-                row.append(String.format("%.6f  ", similarity));
-            }
-            similarityMatrix.put(product1, similarities);
-            log.info(row.toString());  // 打印每一行的相似度
+    private SimilarityModel doCalculateAndStoreSimilarityMatrix(BuildProgress progress) {
+        log.info("开始计算商品相似度矩阵...");
 
-            processedCount++;
-            if (processedCount % 10 == 0) {
-                log.info("已处理 {}/{} 个商品的相似度计算", processedCount, sortedProductIds.size());
-            }
+        // 1. 构建用户-商品倒排索引（购买 + 收藏）
+        progress.phase("构建倒排索引");
+        long[] watermark = new long[1];
+        CoOccurrenceIndex index = buildCoOccurrenceIndex(watermark);
+        int productCount = index.productCount();
+        log.info("共有 {} 个不同商品、{} 个用户需要计算相似度", productCount, index.userCount());
+
+        // 2. 逐行累加共现并计算融合相似度（各行相互独立，可在构建线程池中并行），每行只保留Top-N近邻
+        RecommendProperties.Build build = recommendProperties.getBuild();
+        int neighborSize = recommendProperties.getModel().getNeighborSize();
+        SimilarityKernel<RowAccumulator> kernel = buildKernel();
+        boolean centered = usesAdjustedCosine();
+        long start = System.currentTimeMillis();
+        progress.phase("计算相似度");
+        List<NeighborList> rows = ParallelRowBuilder.build(
+                build.isParallel() ? similarityBuildPool : null,
+                productCount, build.getGrainSize(), () -> new RowAccumulator(centered),
+                (slot, acc) -> computeSimilarityRow(index, kernel, slot, acc, neighborSize), progress);
+        int[] productIds = new int[productCount];
+        for (int slot = 0; slot < productCount; slot++) {
+            productIds[slot] = index.productId(slot);
         }
+        SimilarityModel model = SimilarityModel.of(productIds, rows.toArray(new NeighborList[0]));
+        log.info("相似度计算完成，耗时 {} ms（并行：{}）", System.currentTimeMillis() - start, build.isParallel());
 
         // 3. 存储到Redis
-        log.info("开始将相似度矩阵存储到Redis...");
-        redisTemplate.opsForValue().set(SIMILARITY_MATRIX_KEY, similarityMatrix);
+        log.info("开始将相似度模型存储到Redis...");
+        progress.phase("保存模型");
+        similarityModelStore.save(SIMILARITY_MATRIX_KEY, model);
+        liveIndex = index;
+        purchaseWatermark = watermark[0];
         log.info("商品相似度矩阵计算完成并已存储到Redis");
+        eventPublisher.publishEvent(new RecommendModelRebuiltEvent(SIMILARITY_MATRIX_KEY));
+        return model;
     }
 
-
-
     /**
-     * 构建商品-用户购买矩阵
-     * @return Map<商品ID, Map<用户ID, 购买次数>>
+     * 增量应用一批用户行为（新订单商品、新收藏）
+     * 只重算受影响商品所在的行，并把新的相似度回填到其共现商品的近邻列表（列）中，
+     * 其余商品对的点积和范数都没有变化，无需全量重算
+     * <p>
+     * 以下情况直接丢弃这批行为，由下一次全量构建兜底：
+     * 本节点还没有做过全量构建（没有可维护的倒排索引，不在队列线程上临时全量构建）；
+     * 购买通道使用调整余弦（用户均值变化会影响该用户买过的所有商品对，增量只重算受影响行会得到错误结果）；
+     * 模型已被回滚固定。全量构建期间发生的购买会在构建结束后才从队列取出，订单商品ID不大于构建水位的
+     * 已被流式读取计入索引，跳过以免重复累加（少数ID较小但提交较晚的订单可能因此漏计，由下一次全量构建纠正）。
+     * 倒排索引只包含本节点构建时的数据和本节点收到的行为，
+     * 因此只把重算过的近邻列表修补到Redis中最新发布的模型上，其余行保持不变。
+     * </p>
      */
-    public Map<Integer, Map<Integer, Integer>> buildProductUserMatrix() {
-        log.info("开始构建商品-用户购买矩阵...");
-        // 1.获取用户所有订单商品记录
-        List<OrderProducts> allOrderProducts = orderProductsService.list();
-        log.info("获取到 {} 条订单商品记录", allOrderProducts.size());
-
-        // 2.构建商品-用户矩阵
-        Map<Integer, Map<Integer, Integer>> productUserMatrix = new HashMap<>();
-        // 统计每个用户对每个商品的购买次数
-        for (OrderProducts orderProducts : allOrderProducts) {
-            Integer productId = orderProducts.getProductId();
-            Integer userId = orderProducts.getUserId();
-            int amount = orderProducts.getAmount();
-
-            // 获取或创建该商品的用户购买记录映射
-            Map<Integer, Integer> userPurchases = productUserMatrix.computeIfAbsent(productId, k -> new HashMap<>());
-            // 更新购买次数（累加）
-            userPurchases.merge(userId, amount, Integer::sum);
+    public void applyBehaviorEvents(List<UserBehaviorEvent> events) {
+        if (events.isEmpty()) {
+            return;
         }
-
-        log.info("商品-用户购买矩阵构建完成，包含 {} 个商品", productUserMatrix.size());
-        // 打印购买矩阵
-        log.info("商品-用户购买矩阵:");
-        Set<Integer> productIds = productUserMatrix.keySet();
-        Set<Integer> allUserIds = new HashSet<>();
-        for (Map<Integer, Integer> userMap : productUserMatrix.values()) {
-            allUserIds.addAll(userMap.keySet());
-        }
-
-        List<Integer> sortedProductIds = new ArrayList<>(productIds);
-        List<Integer> sortedUserIds = new ArrayList<>(allUserIds);
-        Collections.sort(sortedProductIds);
-        Collections.sort(sortedUserIds);
-
-        // 打印表头
-        StringBuilder header = new StringBuilder("商品/用户\t");
-        for (Integer userId : sortedUserIds) {
-            header.append(String.format("U%-8d", userId));
+        if (usesAdjustedCosine()) {
+            log.debug("购买通道使用调整余弦，不支持增量更新，{} 条行为将在下次全量构建时生效", events.size());
+            return;
         }
-        log.info(header.toString());
+        synchronized (indexLock) {
+            if (liveIndex == null) {
+                log.info("本节点尚未全量构建相似度模型，{} 条行为将在下次全量构建时生效", events.size());
+                return;
+            }
+            // 1. 把行为写入倒排索引（范数同步更新）
+            Set<Integer> affected = new LinkedHashSet<>();
+            for (UserBehaviorEvent event : events) {
+                if (event.getType() == UserBehaviorEvent.Type.PURCHASE) {
+                    if (event.getRecordId() != null && event.getRecordId() <= purchaseWatermark) {
+                        continue;
+                    }
+                    liveIndex.accumulate(CoOccurrenceIndex.PURCHASE, event.getProductId(), event.getUserId(), event.getAmount());
+                    affected.add(event.getProductId());
+                } else if (event.getType() == UserBehaviorEvent.Type.FAVORITE
+                        && liveIndex.putIfAbsent(CoOccurrenceIndex.FAVORITE, event.getProductId(), event.getUserId(), 1.0) == 0.0) {
+                    affected.add(event.getProductId());
+                }
+            }
+            if (affected.isEmpty() || similarityModelStore.isPinned(SIMILARITY_MATRIX_KEY)) {
+                return;
+            }
 
-        // 打印矩阵内容
-        for (Integer productId : sortedProductIds) {
-            StringBuilder row = new StringBuilder();
-            row.append(String.format("P%-7d", productId));
+            // 2. 重算受影响的行，记录每行的全部共现相似度，供修补对称位置上的列
+            int neighborSize = recommendProperties.getModel().getNeighborSize();
+            SimilarityKernel<RowAccumulator> kernel = buildKernel();
+            RowAccumulator acc = new RowAccumulator(false);
+            Map<Integer, NeighborList> rows = new LinkedHashMap<>();
+            Map<Integer, Map<Integer, Float>> columns = new LinkedHashMap<>();
+            for (Integer productId : affected) {
+                int slot = liveIndex.slotOf(productId);
+                liveIndex.accumulateRow(slot, acc);
+                double[] scores = acc.scores();
+                kernel.score(acc, slot, acc.slots(), acc.size(), scores);
+                TopKCollector topK = new TopKCollector(neighborSize);
+                Map<Integer, Float> row = new HashMap<>();
+                for (int k = 0; k < acc.size(); k++) {
+                    int otherId = liveIndex.productId(acc.slotAt(k));
+                    if (scores[k] > 0) {
+                        topK.offer(otherId, scores[k]);
+                    }
+                    row.put(otherId, (float) scores[k]);
+                }
+                rows.put(productId, topK.toNeighborList());
+                columns.put(productId, row);
+            }
 
-            Map<Integer, Integer> userMap = productUserMatrix.get(productId);
-            for (Integer userId : sortedUserIds) {
-                int value = userMap.getOrDefault(userId, 0);
-                row.append(String.format("%-9d", value));
+            // 3. 在Redis最新模型上修补重算的行和对应的列，写时复制生成新版本
+            int[] modified = new int[1];
+            boolean updated = similarityModelStore.update(SIMILARITY_MATRIX_KEY, latest -> {
+                Map<Integer, NeighborList> updates = new HashMap<>();
+                for (Map.Entry<Integer, Map<Integer, Float>> row : columns.entrySet()) {
+                    for (Map.Entry<Integer, Float> cell : row.getValue().entrySet()) {
+                        NeighborList column = updates.get(cell.getKey());
+                        if (column == null) {
+                            column = latest.neighbors(cell.getKey());
+                        }
+                        updates.put(cell.getKey(), (column == null ? NeighborList.EMPTY : column)
+                                .upsert(row.getKey(), cell.getValue(), neighborSize));
+                    }
+                }
+                updates.putAll(rows);
+                modified[0] = updates.size();
+                return latest.patch(updates);
+            });
+            if (!updated) {
+                return;
             }
-            log.info(row.toString());
+            log.info("增量更新相似度模型完成：{} 条行为，{} 个商品行，{} 个近邻列表被修改",
+                    events.size(), affected.size(), modified[0]);
         }
-        log.info("矩阵中的用户ID列表：{}", allUserIds);
-log.info("矩阵中的商品ID列表：{}", productIds);
-        return productUserMatrix;
     }
 
     /**
-     * 构建商品-用户收藏矩阵（二元矩阵）
-     * @return Map<商品ID, Map<用户ID, 是否收藏(1/0)>>
+     * 构建用户-商品倒排索引
+     * 购买通道按 购买数量 × 下单时间衰减 累加，收藏通道为收藏时间的衰减系数（不衰减时即二元值）
+     * 衰减基准在构建开始时取一次，同一次构建内所有行为一致；增量写入的新行为视为"今天"，不衰减
+     * 通过流式游标逐行读取精简列并直接折叠进原始类型数组，内存峰值只与聚合结果相关，与原始表大小无关
+     * @param watermark 输出参数，[0] 为读到的最大订单商品ID，作为增量更新去重的水位
      */
-    public Map<Integer, Map<Integer, Integer>> buildFavoriteMatrix() {
-        log.info("开始构建商品-用户收藏矩阵...");
-        // 1. 获取所有收藏记录
-        List<Collection> collections = collectionService.list();
-        log.info("获取到 {} 条收藏记录", collections.size());
-
-        // 2. 构建商品-用户收藏矩阵
-        Map<Integer, Map<Integer, Integer>> favoriteMatrix = new HashMap<>();
-
-        // 3. 遍历收藏记录，构建二元矩阵
-        for (Collection collection : collections) {
-            Integer productId = collection.getProductId();
-            Integer userId = collection.getUserId();
-
-            // 获取或创建该商品的用户收藏记录映射
-            Map<Integer, Integer> userFavorites = favoriteMatrix.computeIfAbsent(productId, k -> new HashMap<>());
-            // 设置收藏状态为1（已收藏）
-            userFavorites.put(userId, 1);
-        }
-
-        log.info("商品-用户收藏矩阵构建完成，包含 {} 个商品", favoriteMatrix.size());
-        // 打印收藏矩阵
-        log.info("商品-用户收藏矩阵（1表示已收藏，空白表示未收藏）:");
-        Set<Integer> productIds = favoriteMatrix.keySet();
-        Set<Integer> allUserIds = new HashSet<>();
-        for (Map<Integer, Integer> userMap : favoriteMatrix.values()) {
-            allUserIds.addAll(userMap.keySet());
-        }
-
-        List<Integer> sortedProductIds = new ArrayList<>(productIds);
-        List<Integer> sortedUserIds = new ArrayList<>(allUserIds);
-        Collections.sort(sortedProductIds);
-        Collections.sort(sortedUserIds);
-
-        // 打印表头
-        StringBuilder header = new StringBuilder("商品/用户\t");
-        for (Integer userId : sortedUserIds) {
-            header.append(String.format("U%-8d", userId));
-        }
-        log.info(header.toString());
-
-        // 打印矩阵内容
-        for (Integer productId : sortedProductIds) {
-            StringBuilder row = new StringBuilder();
-            row.append(String.format("P%-7d", productId));
-
-            Map<Integer, Integer> userMap = favoriteMatrix.get(productId);
-            for (Integer userId : sortedUserIds) {
-                int value = userMap.getOrDefault(userId, 0);
-                row.append(String.format("%-9d", value));
+    private CoOccurrenceIndex buildCoOccurrenceIndex(long[] watermark) {
+        CoOccurrenceIndex index = new CoOccurrenceIndex();
+        TimeDecay decay = new TimeDecay(recommendProperties.getCf().getDecayHalfLifeDays(), LocalDate.now());
+        long[] counts = new long[2];
+        orderProductsMapper.streamPurchases(context -> {
+            InteractionRow row = context.getResultObject();
+            index.accumulate(CoOccurrenceIndex.PURCHASE, row.getProductId(), row.getUserId(),
+                    row.getAmount() * decay.factor(row.getBehaviorTime()));
+            if (row.getRecordId() != null) {
+                watermark[0] = Math.max(watermark[0], row.getRecordId());
             }
-            log.info(row.toString());
-        }
-
-        // 添加调试信息
-        log.info("矩阵中的用户ID列表：{}", sortedUserIds);
-        log.info("矩阵中的商品ID列表：{}", sortedProductIds);
-        return favoriteMatrix;
+            counts[0]++;
+        });
+        collectionMapper.streamFavorites(context -> {
+            InteractionRow row = context.getResultObject();
+            index.putIfAbsent(CoOccurrenceIndex.FAVORITE, row.getProductId(), row.getUserId(),
+                    decay.factor(row.getBehaviorTime()));
+            counts[1]++;
+        });
+        log.info("倒排索引构建完成：{} 条订单商品记录，{} 条收藏记录", counts[0], counts[1]);
+        return index;
     }
 
     /**
-     * 计算两个商品向量的余弦相似度
+     * 计算某个商品与其所有共现商品的融合相似度，保留最相似的 neighborSize 个
+     * 先沿倒排表累加出本行全部共现统计，再由核函数对整行候选一次打分
+     * 没有任何共同用户的商品对相似度为0，不会出现在近邻列表中
      */
-    private double calculateCosineSimilarity(Map<Integer, Integer> productVector1, Map<Integer, Integer> productVector2) {
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-
-        // 计算点积和向量范数
-        Set<Integer> allUserIds = new HashSet<>(productVector1.keySet());
-        allUserIds.addAll(productVector2.keySet());
-
-        for (Integer userId : allUserIds) {
-            int value1 = productVector1.getOrDefault(userId, 0);
-            int value2 = productVector2.getOrDefault(userId, 0);
-            dotProduct += value1 * value2;
-            norm1 += value1 * value1;
-            norm2 += value2 * value2;
+    private NeighborList computeSimilarityRow(CoOccurrenceIndex index, SimilarityKernel<RowAccumulator> kernel,
+                                              int slot, RowAccumulator acc, int neighborSize) {
+        index.accumulateRow(slot, acc);
+        double[] scores = acc.scores();
+        kernel.score(acc, slot, acc.slots(), acc.size(), scores);
+        TopKCollector topK = new TopKCollector(neighborSize);
+        for (int k = 0; k < acc.size(); k++) {
+            if (scores[k] > 0) {
+                topK.offer(index.productId(acc.slotAt(k)), scores[k]);
+            }
         }
+        return topK.toNeighborList();
+    }
 
-        // 避免除以零
-        if (norm1 == 0 || norm2 == 0) {
-            return 0.0;
-        }
+    /**
+     * 按配置组合融合相似度核函数
+     * 购买通道：余弦 dot / (|a|·|b|)，或按用户均值中心化的调整余弦
+     * 收藏通道：Jaccard |A∩B| / (|A| + |B| - |A∩B|)（二元向量的平方范数即集合大小）
+     */
+    private SimilarityKernel<RowAccumulator> buildKernel() {
+        RecommendProperties.Cf cf = recommendProperties.getCf();
+        SimilarityKernel<RowAccumulator> purchaseKernel = usesAdjustedCosine()
+                ? new AdjustedCosineKernel(CoOccurrenceIndex.PURCHASE)
+                : new CosineKernel(CoOccurrenceIndex.PURCHASE);
+        return new BlendedKernel<RowAccumulator>()
+                .add(purchaseKernel, cf.getPurchaseWeight())
+                .add(new JaccardKernel(CoOccurrenceIndex.FAVORITE), cf.getFavoriteWeight());
+    }
 
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    private boolean usesAdjustedCosine() {
+        return "adjusted-cosine".equalsIgnoreCase(recommendProperties.getCf().getPurchaseKernel());
     }
 
     /**
-     * 计算两个商品的Jaccard相似度
+     * 获取商品相似度模型，Redis中不存在时触发重建（全集群只有一个节点、节点内只有一个线程执行重建）
+     * 等待超时时返回 null，由调用方降级
      */
-    private double calculateJaccardSimilarity(Map<Integer, Integer> product1Favorites, Map<Integer, Integer> product2Favorites) {
-        Set<Integer> users1 = product1Favorites.entrySet().stream()
-                .filter(e -> e.getValue() > 0)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
-        Set<Integer> users2 = product2Favorites.entrySet().stream()
-                .filter(e -> e.getValue() > 0)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
-
-        if (users1.isEmpty() && users2.isEmpty()) {
-            return 0.0;
+    public SimilarityModel getSimilarityModel() {
+        SimilarityModel model = similarityModelStore.loadOrBuild(SIMILARITY_MATRIX_KEY, this::calculateAndStoreSimilarityMatrix);
+        if (model == null) {
+            log.warn("商品相似度模型尚未就绪（正在重建或重建失败）");
         }
-
-        Set<Integer> intersection = new HashSet<>(users1);
-        intersection.retainAll(users2);
-
-        Set<Integer> union = new HashSet<>(users1);
-        union.addAll(users2);
-
-        return (double) intersection.size() / union.size();
+        return model;
     }
 
-
     /**
-     * 获取商品相似度矩阵
+     * 获取商品相似度矩阵（由近邻列表展开，仅供调试展示）
      */
     public Map<Integer, Map<Integer, Double>> getSimilarityMatrix() {
         log.info("尝试从Redis获取商品相似度矩阵...");
-        Map<Integer, Map<Integer, Double>> matrix = redisTemplate.opsForValue().get(SIMILARITY_MATRIX_KEY);
-        if (matrix == null) {
-            log.info("Redis中未找到相似度矩阵，开始重新计算...");
-            calculateAndStoreSimilarityMatrix();
-            matrix = redisTemplate.opsForValue().get(SIMILARITY_MATRIX_KEY);
-        }
-        log.info("成功获取商品相似度矩阵，包含 {} 个商品", matrix != null ? matrix.size() : 0);
-        return matrix;
+        SimilarityModel model = getSimilarityModel();
+        log.info("成功获取商品相似度矩阵，包含 {} 个商品", model != null ? model.size() : 0);
+        return model != null ? model.toMatrix() : null;
     }
 
     /**
      * 开始推荐
      */
-
-    @SuppressWarnings("unchecked")//抑制**泛型未检查的转换（Unchecked Cast）**警告。通常在从 Object 类型强制转换成泛型类型时，编译器会警告可能的 ClassCastException，
     public List<RecommendItem> recommendProducts(Integer userId, int topK) {
         log.info("开始为用户userId = {} 推荐商品...", userId);
 
-        //1.获取相似度矩阵
-        Map<Integer,Map<Integer,Double>> similarityMatrix =  (Map<Integer, Map<Integer, Double>>) redisTemplate.opsForValue().get(SIMILARITY_MATRIX_KEY);
-        if(similarityMatrix == null){
-            log.warn("相似度矩阵未找到，需要重新计算");
-            calculateAndStoreSimilarityMatrix();
-            similarityMatrix = (Map<Integer, Map<Integer, Double>>) redisTemplate.opsForValue().get(SIMILARITY_MATRIX_KEY);
+        //1.获取相似度模型
+        SimilarityModel similarityModel = getSimilarityModel();
+        if (similarityModel == null) {
+            log.warn("相似度模型不可用，用户userId = {} 暂无协同过滤推荐", userId);
+            return Collections.emptyList();
         }
         //2.获取用户的历史行为数据
-        UserBehaviorData behaviorData = getUserBehaviorData(userId);
+        UserBehaviorData behaviorData = userBehaviorLoader.load(userId);
+        return recommendProducts(userId, behaviorData, similarityModel, topK);
+    }
+
+    /**
+     * 使用已加载的行为数据和相似度模型推荐（批量推荐时模型和行为数据由调用方统一加载）
+     */
+    public List<RecommendItem> recommendProducts(Integer userId, UserBehaviorData behaviorData,
+                                                 SimilarityModel similarityModel, int topK) {
+        if (similarityModel == null) {
+            return Collections.emptyList();
+        }
         if(behaviorData.isEmpty()){
             log.info("用户userId = {} 没有历史行为数据", userId);
             return Collections.emptyList();
         }
         // 3. 计算推荐分数
-        Map<Integer, Double> recommendScores = calculateRecommendScores(userId, behaviorData, similarityMatrix);
+        Map<Integer, Double> recommendScores = calculateRecommendScores(userId, behaviorData, similarityModel);
 
         // 4. 排序并返回TopK推荐结果
         return recommendScores.entrySet().stream()
@@ -351,137 +359,86 @@ log.info("矩阵中的商品ID列表：{}", productIds);
                 .map(e -> new RecommendItem(e.getKey(), e.getValue()))// // 转换为 RecommendItem 对象
                 .collect(Collectors.toList());
     }
-    /**
-     * 获取用户行为数据
-     */
-    private UserBehaviorData getUserBehaviorData(Integer userId){
-        UserBehaviorData data = new UserBehaviorData();
-        LocalDateTime now = LocalDateTime.now();
-
-        //1.获取购买记录
-        LambdaQueryWrapper<OrderProducts> orderWrapper = new LambdaQueryWrapper<>();
-        orderWrapper.eq(OrderProducts::getUserId , userId);
-        List<OrderProducts> purchases = orderProductsService.list(orderWrapper);
-
-        //2.获取收藏记录
-        LambdaQueryWrapper<Collection> collectionLambdaQueryWrapper = new LambdaQueryWrapper<>();
-        collectionLambdaQueryWrapper.eq(Collection::getUserId , userId);
-        List<Collection> collections = collectionService.list(collectionLambdaQueryWrapper);
-
-        //3.获取评分记录
-        LambdaQueryWrapper<Evaluation> evaluationLambdaQueryWrapper = new LambdaQueryWrapper<>();
-        evaluationLambdaQueryWrapper.eq(Evaluation::getUserId,userId);
-        List<Evaluation> evaluations = evaluationService.list(evaluationLambdaQueryWrapper);
-
-        //4.处理购买数据至data中
-        for(OrderProducts purchase : purchases){
-            ProductBehavior behavior = data.getBehaviors().computeIfAbsent(
-                    purchase.getProductId(),
-                    k -> new ProductBehavior()
-            );
-            behavior.setPurchaseCount(behavior.getPurchaseCount() + purchase.getAmount());
-        }
-
-        //5.处理收藏数据
-        for(Collection collection : collections){
-            ProductBehavior behavior = data.getBehaviors().computeIfAbsent(
-                    collection.getProductId(),
-                    k -> new ProductBehavior()
-            );
-            behavior.setFavorited(true);
-            behavior.setFavoriteTime(collection.getCollectionTime());
-        }
-        //6.处理评分数据
-        for(Evaluation evaluation : evaluations){
-            ProductBehavior behavior = data.getBehaviors().computeIfAbsent(
-                evaluation.getProductId(),
-                k -> new ProductBehavior()
-            );
-            behavior.setRating(evaluation.getEvaluationScore());
-        }
-        log.info("用户userId = {} 的行为数据：{}", userId, data);
-        return data;
-    }
     /**
      * 计算推荐分数
      */
-    private Map<Integer,Double> calculateRecommendScores(Integer userId,UserBehaviorData userData,Map<Integer, Map<Integer, Double>> similarityMatrix){
+    private Map<Integer,Double> calculateRecommendScores(Integer userId,UserBehaviorData userData,SimilarityModel similarityModel){
         Map<Integer, Double> scores = new HashMap<>();
-        LocalDateTime now = LocalDateTime.now();
-        //对每个可能的候选商品计算推荐分数
+        long today = LocalDate.now().toEpochDay();
         /**
-         * 大致思路：
-         * 1. **第一层循环（遍历候选商品）**：
-         *    - 遍历相似度矩阵中的所有商品，作为可能的推荐候选项 `candidateItem`。
-         *    - 如果用户已经交互过该商品，则跳过，避免重复推荐。
+         * 大致思路（反向遍历近邻列表，只触达用户历史商品的近邻）：
+         * 1. **预先计算行为权重（每次请求每个历史商品只算一次）**：
+         *    - **购买行为**：购买次数越多，权重越高，但设定上限（如最多取 5 次）。
+         *    - **收藏行为**：收藏时间越久远，影响力越低，使用时间衰减因子计算。
+         *    - **评分行为**：评分越高，影响权重越大，归一化到 [0,1] 之间。
          *
-         * 2. **第二层循环（计算候选商品的推荐分数）**：
-         *    - 遍历用户交互过的所有商品 `userItem`，检查其与当前候选商品 `candidateItem` 的相似度。
-         *    - 如果两者有相似度数据，则根据用户对 `userItem` 的交互行为计算加权得分：
-         *      - **购买行为**：购买次数越多，权重越高，但设定上限（如最多取 5 次）。
-         *      - **收藏行为**：收藏时间越久远，影响力越低，使用时间衰减因子计算。
-         *      - **评分行为**：评分越高，影响权重越大，归一化到 [0,1] 之间。
-         *    - 计算权重后，乘以相似度值，累加到 `candidateItem` 的最终推荐分数。
+         * 2. **遍历每个历史商品的Top-N近邻**：
+         *    - 近邻 `candidateItem` 若用户已经交互过或已删除则跳过，避免重复推荐。
+         *    - 相似度（对称）乘以预先算好的行为权重，累加到 `candidateItem` 的推荐分数。
          *
          * 3. **筛选推荐结果**：
-         *    - 如果 `candidateItem` 计算出的推荐分数大于 0，则存入推荐列表，表示该商品值得推荐。
+         *    - 推荐分数大于 0 的商品才进入推荐列表。
          */
 
         log.info("开始计算用户userId = {} 的推荐分数...", userId);
-        for(Map.Entry<Integer,Map<Integer,Double>> entry : similarityMatrix.entrySet()){
-            Integer candidateItem = entry.getKey();// 候选商品 candidateItem。
-            //跳过用户已交互过的商品
-            if(userData.getBehaviors().containsKey(candidateItem)){
-                log.debug("商品ID = {} 是用户已交互过的商品，跳过", candidateItem);
+        Map<Integer, ProductBehavior> behaviors = userData.getBehaviors();
+        int[] historyItems = new int[behaviors.size()];
+        double[] historyWeights = new double[behaviors.size()];
+        int historyCount = 0;
+        for(Map.Entry<Integer,ProductBehavior> behaviorEntry : behaviors.entrySet()){
+            double behaviorWeight = calculateBehaviorWeight(behaviorEntry.getValue(), today);
+            if(behaviorWeight != 0.0){
+                historyItems[historyCount] = behaviorEntry.getKey();
+                historyWeights[historyCount++] = behaviorWeight;
+            }
+        }
+        for(int i = 0; i < historyCount; i++){
+            NeighborList neighbors = similarityModel.neighbors(historyItems[i]);//用户交互过的商品的近邻
+            if(neighbors == null){
                 continue;
             }
-            double score = 0.0; //以为交涉商品为主，累加
-            Map<Integer,Double> similarities = entry.getValue();//存储 该商品与其他所有商品的相似度。.如：P1与其他商品      1.000000  0.700000  0.300000  0.000000  0.000000  0.300000  0.000000  0.300000  0.313050  0.259973  0.300000  0.313050  0.300000  0.000000  0.626099  0.300000  0.613050  0.000000
-            log.debug("开始计算商品ID = {} 的推荐分数", candidateItem);
-
-            //基于用户的每个历史行为计算推荐分数
-            for(Map.Entry<Integer,ProductBehavior> behaviorEntry : userData.getBehaviors().entrySet()){
-                //遍历用户 userData 里的历史行为，每个 behaviorEntry 代表用户交互过的一个商品。
-                Integer userItem = behaviorEntry.getKey();//用户交互过的商品 ID
-                ProductBehavior behavior = behaviorEntry.getValue();//用户对 userItem 的交互数据（包含购买次数、收藏、评分等信息）。
-                Double similarity = similarities.get(userItem); //candidateItem 和 userItem 的相似度。
-                if(similarity == null){
+            double behaviorWeight = historyWeights[i];
+            for(int k = 0; k < neighbors.size(); k++){
+                int candidateItem = neighbors.idAt(k);
+                //跳过用户已交互过的商品和已删除的商品
+                if(behaviors.containsKey(candidateItem) || !productCatalog.isLive(candidateItem)){
                     continue;
                 }
-                // 计算行为权重
-                double behaviorWeight = 0.0;
-                //购买行为权重
-                if(behavior.getPurchaseCount() > 0){
-                    behaviorWeight += PURCHASE_WEIGHT * Math.min(behavior.getPurchaseCount(), 5);// 限制购买次数的影响，避免单个商品被过度权重化。
-                }
-                //收藏行为权重
-                if(behavior.isFavorited()){
-                    double timeDecay = 1.0;
-                    if(behavior.getFavoriteTime() != null){
-                        long days = ChronoUnit.DAYS.between(behavior.getFavoriteTime(),now);//计算收藏时间与当前时间的时间差 days
-                        timeDecay = 1.0 / (1.0 + TIME_DECAY_FACTOR * days);//随着时间推移，收藏行为的影响力逐渐降低。
-                    }
-                    behaviorWeight += FAVORITE_WEIGHT * timeDecay;
-                }
-
-                //评分行为权重
-                if(behavior.getRating() != null && behavior.getRating() > 0){
-                    behaviorWeight += RATING_WEIGHT * (behavior.getRating() / 10.0);//归一化评分，使其值在 [0, 1] 之间。
-                }
-                //累加推荐分数
-                score += similarity * behaviorWeight;//商品 candidateItem 的推荐分数 score = 其与 userItem 的相似度 × 用户的交互权重
-                log.debug("商品ID = {} 与用户交互商品ID = {} 的相似度为{}, 行为权重为{}, 累加分数为{}",
-                    candidateItem, userItem, similarity, behaviorWeight, score);
-            }
-            if(score > 0){
-                scores.put(candidateItem,score);
-                log.info("商品ID = {} 的最终推荐分数为{}", candidateItem, score);
+                //商品 candidateItem 的推荐分数 score += 其与 userItem 的相似度 × 用户的交互权重
+                scores.merge(candidateItem, neighbors.scoreAt(k) * behaviorWeight, Double::sum);
             }
         }
+        scores.values().removeIf(score -> score <= 0);
         log.info("用户userId = {} 的推荐分数计算完成，共有{}\u4e2a商品被推荐", userId, scores.size());
         return scores;
     }
 
+    /**
+     * 计算用户对某个历史商品的行为权重
+     * @param today 请求开始时的日期（epoch day），收藏时间衰减按天计算
+     */
+    private double calculateBehaviorWeight(ProductBehavior behavior, long today) {
+        double behaviorWeight = 0.0;
+        //购买行为权重
+        if(behavior.getPurchaseCount() > 0){
+            behaviorWeight += PURCHASE_WEIGHT * Math.min(behavior.getPurchaseCount(), 5);// 限制购买次数的影响，避免单个商品被过度权重化。
+        }
+        //收藏行为权重
+        if(behavior.isFavorited()){
+            double timeDecay = 1.0;
+            if(behavior.getFavoriteTime() != null){
+                long days = Math.max(0, today - behavior.getFavoriteTime().toLocalDate().toEpochDay());//收藏至今的天数
+                timeDecay = 1.0 / (1.0 + TIME_DECAY_FACTOR * days);//随着时间推移，收藏行为的影响力逐渐降低。
+            }
+            behaviorWeight += FAVORITE_WEIGHT * timeDecay;
+        }
+        //评分行为权重
+        if(behavior.getRating() != null && behavior.getRating() > 0){
+            behaviorWeight += RATING_WEIGHT * (behavior.getRating() / 10.0);//归一化评分，使其值在 [0, 1] 之间。
+        }
+        return behaviorWeight;
+    }
+
     /**
      * 定时更新商品相似度矩阵
      * cron表达式说明：
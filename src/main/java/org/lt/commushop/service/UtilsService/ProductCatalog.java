@@ -0,0 +1,83 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.domain.Hander.ProductChangeEvent;
+import org.lt.commushop.mapper.ProductMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 在售商品目录（推荐结果过滤用）
+ * 内存中保存未删除商品ID的升序数组，请求时二分查找、无锁读取；
+ * 定时全量刷新，商品上架/删除事件到达时立即写时复制更新，推荐请求不再查询整张商品表
+ */
+@Slf4j
+@Service
+public class ProductCatalog {
+    @Autowired
+    private ProductMapper productMapper;
+
+    private volatile int[] liveIds;
+
+    /**
+     * 商品是否在售（存在且未删除）
+     */
+    public boolean isLive(int productId) {
+        int[] ids = liveIds;
+        if (ids == null) {
+            ids = refresh();
+        }
+        return Arrays.binarySearch(ids, productId) >= 0;
+    }
+
+    /**
+     * 在售商品数量
+     */
+    public int size() {
+        int[] ids = liveIds;
+        return ids != null ? ids.length : refresh().length;
+    }
+
+    /**
+     * 从数据库全量刷新目录
+     */
+    @Scheduled(fixedDelayString = "${recommend.catalog.refresh-interval-ms:60000}")
+    public synchronized int[] refresh() {
+        List<Integer> ids = productMapper.selectLiveProductIds();
+        int[] sorted = ids.stream().mapToInt(Integer::intValue).sorted().toArray();
+        liveIds = sorted;
+        log.debug("在售商品目录已刷新，共 {} 个商品", sorted.length);
+        return sorted;
+    }
+
+    /**
+     * 商品上架、删除后立即更新目录（修改不影响在售状态）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChange(ProductChangeEvent event) {
+        int[] ids = liveIds;
+        if (ids == null) {
+            return;
+        }
+        int productId = event.getProductId();
+        int pos = Arrays.binarySearch(ids, productId);
+        if (event.getType() == ProductChangeEvent.Type.CREATED && pos < 0) {
+            int insert = -pos - 1;
+            int[] updated = new int[ids.length + 1];
+            System.arraycopy(ids, 0, updated, 0, insert);
+            updated[insert] = productId;
+            System.arraycopy(ids, insert, updated, insert + 1, ids.length - insert);
+            liveIds = updated;
+        } else if (event.getType() == ProductChangeEvent.Type.DELETED && pos >= 0) {
+            int[] updated = new int[ids.length - 1];
+            System.arraycopy(ids, 0, updated, 0, pos);
+            System.arraycopy(ids, pos + 1, updated, pos, ids.length - pos - 1);
+            liveIds = updated;
+        }
+    }
+}
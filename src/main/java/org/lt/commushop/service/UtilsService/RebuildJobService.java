@@ -0,0 +1,247 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.domain.vo.RebuildJobVO;
+import org.lt.commushop.exception.BusinessException;
+import org.lt.commushop.service.UtilsService.recommend.BuildProgress;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 相似度矩阵异步重建任务
+ * 手动触发的全量重建在专用的单线程执行器中排队执行（与模型缺失重建、增量更新所用的线程池隔离），
+ * 接口立即返回任务ID，之后通过任务ID查询进度或取消；任务开始执行前状态为 QUEUED。
+ * 同一类型的模型同一时间只允许一个任务排队或运行（本节点内），重复触发会被拒绝。
+ * 只保留最近 {@value #MAX_FINISHED_JOBS} 个已结束的任务。
+ * 同时提供模型版本查询与回滚（见 {@link SimilarityModelStore}）
+ */
+@Slf4j
+@Service
+public class RebuildJobService {
+    public static final String TYPE_CF = "cf";
+    public static final String TYPE_CONTENT = "content";
+    private static final int MAX_FINISHED_JOBS = 20;
+
+    @Autowired
+    private ItemBasedCFService itemBasedCFService;
+    @Autowired
+    private ContentBasedService contentBasedService;
+    @Autowired
+    private ExecutorService rebuildJobExecutor;
+    @Autowired
+    private SimilarityModelStore similarityModelStore;
+
+    // 按提交顺序保存，读写均在 this 上同步
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    /**
+     * 提交重建任务
+     * @param type cf 或 content
+     * @throws BusinessException 类型不支持，或该类型已有任务在运行
+     */
+    public synchronized RebuildJobVO submit(String type) {
+        modelKey(type); // 校验类型
+        for (Job job : jobs.values()) {
+            if (job.type.equals(type) && !job.status.finished()) {
+                throw new BusinessException("已有" + type + "重建任务正在排队或运行，任务ID：" + job.id);
+            }
+        }
+        Job job = new Job(UUID.randomUUID().toString().replace("-", ""), type);
+        try {
+            rebuildJobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            throw new BusinessException("重建任务提交失败，请稍后重试");
+        }
+        jobs.put(job.id, job);
+        evictFinished();
+        log.info("已提交{}相似度矩阵重建任务：{}", type, job.id);
+        return job.toVO();
+    }
+
+    /**
+     * 查询任务状态
+     */
+    public synchronized RebuildJobVO get(String jobId) {
+        return find(jobId).toVO();
+    }
+
+    /**
+     * 最近的任务（按提交时间倒序）
+     */
+    public synchronized List<RebuildJobVO> list() {
+        List<RebuildJobVO> result = new ArrayList<>(jobs.size());
+        for (Job job : jobs.values()) {
+            result.add(0, job.toVO());
+        }
+        return result;
+    }
+
+    /**
+     * 请求取消任务：排队中的任务直接取消；运行中的任务在下一阶段或下一行开始时生效，已进入保存阶段的任务无法取消
+     */
+    public synchronized RebuildJobVO cancel(String jobId) {
+        Job job = find(jobId);
+        if (job.status.finished()) {
+            throw new BusinessException("任务已结束，无法取消");
+        }
+        job.progress.cancel();
+        if (job.status == Status.QUEUED) {
+            finish(job, Status.CANCELLED, null, "任务已取消");
+        }
+        log.info("已请求取消相似度矩阵重建任务：{}", jobId);
+        return job.toVO();
+    }
+
+    /**
+     * 某类模型在Redis中的版本信息
+     */
+    public SimilarityModelStore.ModelVersions versions(String type) {
+        return similarityModelStore.versions(modelKey(type));
+    }
+
+    /**
+     * 把某类模型回滚到上一次全量构建（指针切换，立即生效；下一次全量构建前暂停增量更新）
+     * @return 回滚后的版本号
+     */
+    public long rollback(String type) {
+        return similarityModelStore.rollback(modelKey(type));
+    }
+
+    /**
+     * 模型类型对应的 Redis 键，不支持的类型抛出业务异常（重建、回滚、诊断导出共用的类型校验）
+     */
+    static String modelKey(String type) {
+        if (TYPE_CF.equals(type)) {
+            return ItemBasedCFService.SIMILARITY_MATRIX_KEY;
+        }
+        if (TYPE_CONTENT.equals(type)) {
+            return ContentBasedService.CONTENT_SIMILARITY_MATRIX_KEY;
+        }
+        throw new BusinessException("不支持的模型类型：" + type);
+    }
+
+    private void run(Job job) {
+        if (!start(job)) {
+            return;
+        }
+        try {
+            SimilarityModel model = TYPE_CF.equals(job.type)
+                    ? itemBasedCFService.calculateAndStoreSimilarityMatrix(job.progress)
+                    : contentBasedService.calculateAndStoreContentSimilarityMatrix(job.progress);
+            finish(job, Status.SUCCEEDED, model, null);
+        } catch (CancellationException e) {
+            finish(job, Status.CANCELLED, null, "任务已取消");
+            log.info("相似度矩阵重建任务已取消：{}", job.id);
+        } catch (Exception e) {
+            finish(job, Status.FAILED, null, e.getMessage());
+            log.error("相似度矩阵重建任务失败：{}", job.id, e);
+        }
+    }
+
+    /**
+     * 排队中的任务转为运行中；已在排队时取消的任务不再执行
+     */
+    private synchronized boolean start(Job job) {
+        if (job.status != Status.QUEUED) {
+            return false;
+        }
+        job.status = Status.RUNNING;
+        job.startTime = LocalDateTime.now();
+        job.startMillis = System.currentTimeMillis();
+        return true;
+    }
+
+    private synchronized void finish(Job job, Status status, SimilarityModel model, String message) {
+        job.status = status;
+        job.endMillis = System.currentTimeMillis();
+        job.message = message;
+        if (model != null) {
+            job.productCount = model.size();
+            job.entryCount = model.entryCount();
+        }
+    }
+
+    private Job find(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException("重建任务不存在：" + jobId);
+        }
+        return job;
+    }
+
+    private void evictFinished() {
+        int finished = 0;
+        for (Job job : jobs.values()) {
+            if (job.status.finished()) {
+                finished++;
+            }
+        }
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (finished > MAX_FINISHED_JOBS && iterator.hasNext()) {
+            if (iterator.next().status.finished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+
+    private enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        boolean finished() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
+
+    private static final class Job {
+        final String id;
+        final String type;
+        final BuildProgress progress = new BuildProgress();
+        final LocalDateTime submitTime = LocalDateTime.now();
+        Status status = Status.QUEUED;
+        // 开始执行时设置；排队中取消的任务始终为空
+        LocalDateTime startTime;
+        long startMillis;
+        long endMillis;
+        Integer productCount;
+        Long entryCount;
+        String message;
+
+        Job(String id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        RebuildJobVO toVO() {
+            RebuildJobVO vo = new RebuildJobVO();
+            vo.setJobId(id);
+            vo.setType(type);
+            vo.setStatus(status.name());
+            vo.setPhase(progress.phase());
+            vo.setProgress(status == Status.SUCCEEDED ? 100.0 : progress.percent());
+            vo.setProcessedRows(progress.processedRows());
+            vo.setTotalRows(progress.totalRows());
+            vo.setSubmitTime(submitTime);
+            vo.setStartTime(startTime);
+            if (startTime != null) {
+                vo.setElapsedMs((status == Status.RUNNING ? System.currentTimeMillis() : endMillis) - startMillis);
+            }
+            vo.setProductCount(productCount);
+            vo.setEntryCount(entryCount);
+            vo.setMessage(message);
+            return vo;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.exception.BusinessException;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityMatrixDumper;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 推荐系统诊断服务：按需把相似度模型抽样导出到文件，替代构建时打印整张矩阵
+ */
+@Slf4j
+@Service
+public class RecommendDiagnosticsService {
+    @Autowired
+    private ItemBasedCFService itemBasedCFService;
+    @Autowired
+    private ContentBasedService contentBasedService;
+    @Autowired
+    private RecommendProperties recommendProperties;
+
+    /**
+     * 导出相似度模型
+     * @param type       cf 或 content，其他值抛出业务异常
+     * @param sampleSize 抽样行数，小于等于0导出全部
+     * @return 导出文件的绝对路径
+     */
+    public String dumpSimilarityModel(String type, int sampleSize) {
+        // 先校验类型，文件名只使用校验后的常量，不拼接请求参数，避免写出导出目录之外
+        RebuildJobService.modelKey(type);
+        String checkedType = RebuildJobService.TYPE_CF.equals(type)
+                ? RebuildJobService.TYPE_CF
+                : RebuildJobService.TYPE_CONTENT;
+        SimilarityModel model = RebuildJobService.TYPE_CF.equals(checkedType)
+                ? itemBasedCFService.getSimilarityModel()
+                : contentBasedService.getContentSimilarityModel();
+        if (model == null) {
+            throw new BusinessException("相似度模型不存在，无法导出");
+        }
+        Path file = Paths.get(recommendProperties.getDiagnostics().getDumpDir(),
+                checkedType + "-similarity-" + System.currentTimeMillis() + ".tsv.gz");
+        try {
+            int rows = SimilarityMatrixDumper.dump(model, sampleSize, file);
+            log.info("相似度模型已导出：{}，共 {} 行", file.toAbsolutePath(), rows);
+            return file.toAbsolutePath().toString();
+        } catch (IOException e) {
+            throw new BusinessException("导出相似度模型失败：" + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.HybridScores;
+import org.lt.commushop.domain.Hander.RecommendModelRebuiltEvent;
+import org.lt.commushop.domain.Hander.UserBehaviorEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 混合推荐结果的后台预计算
+ * 1. 相似度模型全量重建后，为所有活跃用户重新计算 Top-K 并写入 {@link RecommendResultCache}；
+ * 2. 用户下单、收藏、评价后，先删除其旧结果，再单独为该用户重新计算。
+ * 全部在预计算线程池中执行，不占用请求线程；推荐接口只在缓存未命中时实时计算
+ */
+@Slf4j
+@Service
+public class RecommendPrecomputeService {
+    @Autowired
+    private HybridRecommendationService hybridRecommendationService;
+    @Autowired
+    private RecommendResultCache recommendResultCache;
+    @Autowired
+    private UserBehaviorLoader userBehaviorLoader;
+    @Autowired
+    private RecommendProperties recommendProperties;
+    @Autowired
+    private ExecutorService recommendPrecomputeExecutor;
+
+    // 已提交、尚未执行的单用户任务，同一用户只保留一个
+    private final Set<Integer> pendingUsers = ConcurrentHashMap.newKeySet();
+    // 全量刷新进行中时再次触发（如两个模型先后重建完成），只在当前一轮结束后补跑一轮
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicBoolean refreshAgain = new AtomicBoolean();
+
+    /**
+     * 模型重建完成后刷新全部活跃用户
+     */
+    @EventListener
+    public void onModelRebuilt(RecommendModelRebuiltEvent event) {
+        if (!recommendProperties.getPrecompute().isEnabled()) {
+            return;
+        }
+        submit(this::refreshActiveUsers, "模型 " + event.getModelKey() + " 重建后的全量预计算");
+    }
+
+    /**
+     * 用户行为变化后刷新该用户
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBehaviorEvent(UserBehaviorEvent event) {
+        if (!recommendProperties.getPrecompute().isEnabled()) {
+            return;
+        }
+        Integer userId = event.getUserId();
+        recommendResultCache.evict(userId);
+        recommendResultCache.touch(userId);
+        if (pendingUsers.add(userId)) {
+            submit(() -> {
+                pendingUsers.remove(userId);
+                // 行为缓存的失效监听不保证先于本监听执行，这里主动失效一次
+                userBehaviorLoader.invalidate(userId);
+                refreshUser(userId);
+            }, "用户userId = " + userId + " 的预计算");
+        }
+    }
+
+    /**
+     * 为所有活跃用户重新计算推荐结果
+     */
+    public void refreshActiveUsers() {
+        if (!refreshing.compareAndSet(false, true)) {
+            refreshAgain.set(true);
+            return;
+        }
+        try {
+            do {
+                refreshAgain.set(false);
+                long start = System.currentTimeMillis();
+                List<Integer> users = recommendResultCache.activeUsers();
+                int failed = 0;
+                for (Integer userId : users) {
+                    try {
+                        refreshUser(userId);
+                    } catch (Exception e) {
+                        failed++;
+                        log.warn("用户userId = {} 的推荐结果预计算失败：{}", userId, e.getMessage());
+                    }
+                }
+                log.info("活跃用户推荐结果预计算完成：{} 个用户，失败 {} 个，耗时 {} ms",
+                        users.size(), failed, System.currentTimeMillis() - start);
+            } while (refreshAgain.get());
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * 为单个用户重新计算并写入推荐结果
+     * 有分支超时或失败时不写入，保留原有结果（或等待下次请求时实时计算）
+     */
+    public void refreshUser(Integer userId) {
+        int listSize = recommendProperties.getPrecompute().getListSize();
+        HybridScores scores = hybridRecommendationService.computeHybridScores(userId, listSize);
+        if (!scores.isComplete()) {
+            log.warn("用户userId = {} 的推荐结果不完整，本次不写入预计算缓存", userId);
+            return;
+        }
+        if (!scores.getItems().isEmpty()) {
+            recommendResultCache.put(userId, scores.getItems(), listSize);
+        }
+    }
+
+    private void submit(Runnable task, String description) {
+        try {
+            recommendPrecomputeExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.error("{}失败：{}", description, e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("预计算队列已满，跳过{}", description);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.RecommendItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 预计算的混合推荐结果缓存
+ * <p>
+ * 每个用户一个Redis哈希 recommend:hybrid:{userId}：字段为商品ID，值为混合推荐分数，
+ * 另有字段 _k 记录预计算时的列表长度；整个哈希带 TTL，过期即视为未命中。
+ * 最近访问过推荐接口或产生过行为的用户记录在有序集合 recommend:active-users 中（分数为最近活跃时间），
+ * 后台预计算只处理这部分用户。
+ * </p>
+ */
+@Slf4j
+@Service
+public class RecommendResultCache {
+    private static final String RESULT_KEY_PREFIX = "recommend:hybrid:";
+    private static final String ACTIVE_USERS_KEY = "recommend:active-users";
+    private static final String SIZE_FIELD = "_k";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RecommendProperties recommendProperties;
+
+    /**
+     * 读取预计算结果，按分数降序取前 topK 个
+     * 未命中、已过期或 topK 超过预计算长度时返回 null，由调用方实时计算
+     */
+    public List<RecommendItem> get(Integer userId, int topK) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(RESULT_KEY_PREFIX + userId);
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Object size = entries.remove(SIZE_FIELD);
+        if (size == null || Integer.parseInt(size.toString()) < topK) {
+            return null;
+        }
+        List<RecommendItem> items = new ArrayList<>(entries.size());
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            items.add(new RecommendItem(Integer.valueOf(entry.getKey().toString()),
+                    Double.valueOf(entry.getValue().toString())));
+        }
+        items.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return items.size() > topK ? items.subList(0, topK) : items;
+    }
+
+    /**
+     * 写入某个用户的推荐结果（覆盖旧结果并重置 TTL）
+     * @param listSize 计算时请求的列表长度，结果少于该长度说明候选已全部取完
+     */
+    public void put(Integer userId, List<RecommendItem> items, int listSize) {
+        String key = RESULT_KEY_PREFIX + userId;
+        Map<String, String> hash = new HashMap<>(items.size() * 2);
+        for (RecommendItem item : items) {
+            hash.put(item.getProductId().toString(), item.getScore().toString());
+        }
+        hash.put(SIZE_FIELD, Integer.toString(listSize));
+        stringRedisTemplate.delete(key);
+        stringRedisTemplate.opsForHash().putAll(key, hash);
+        stringRedisTemplate.expire(key, recommendProperties.getPrecompute().getResultTtlMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 删除某个用户的推荐结果（行为变化后旧结果不再可信）
+     */
+    public void evict(Integer userId) {
+        stringRedisTemplate.delete(RESULT_KEY_PREFIX + userId);
+    }
+
+    /**
+     * 记录用户活跃
+     */
+    public void touch(Integer userId) {
+        stringRedisTemplate.opsForZSet().add(ACTIVE_USERS_KEY, userId.toString(), System.currentTimeMillis());
+    }
+
+    /**
+     * 活跃窗口内最近活跃的用户（最多 maxUsers 个），同时清理窗口外的记录
+     */
+    public List<Integer> activeUsers() {
+        RecommendProperties.Precompute precompute = recommendProperties.getPrecompute();
+        long since = System.currentTimeMillis() - precompute.getActiveWindowMs();
+        stringRedisTemplate.opsForZSet().removeRangeByScore(ACTIVE_USERS_KEY, 0, since);
+        Set<String> users = stringRedisTemplate.opsForZSet().reverseRange(ACTIVE_USERS_KEY, 0, precompute.getMaxUsers() - 1);
+        if (users == null) {
+            return Collections.emptyList();
+        }
+        return users.stream().map(Integer::valueOf).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,560 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.exception.BusinessException;
+import org.lt.commushop.service.UtilsService.recommend.NeighborList;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModelCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+/**
+ * 相似度模型存取服务
+ * 协同过滤与基于内容的推荐共用，统一负责模型在Redis中的读写
+ * 模型以 {@link SimilarityModelCodec} 紧凑编码后按原始字节存储
+ * <p>
+ * 模型按版本存储：每次保存分配新的版本号 n，先完整写入 {key}:v{n}，再原子地把指针 {key}:version 指向 n，
+ * 读者只会看到某个完整的版本，构建失败时指针不动；最近 retained-versions 个全量构建版本保留在 {key}:versions 中，
+ * 可随时回滚到上一次全量构建，更早的版本在后台线程中异步删除
+ * </p>
+ * <p>
+ * 增量更新（{@link #update}）不重写整个模型，只发布改动过的行：全量版本 n 之上的补丁行写入哈希 {key}:v{n}:rows
+ * （字段为商品ID，值为单行编码），每次发布把修订号 {key}:v{n}:rev 加一，并在有序集合 {key}:v{n}:changed 中
+ * 记下每个商品最后一次被修改的修订号。发布脚本比较并交换修订号，其他节点抢先发布时在其结果上重新应用；
+ * 下一次全量构建产生新的版本号，补丁随之作废（相当于压缩），随旧版本一起清理。
+ * 回滚后指针被钉住（{key}:pinned），在下一次全量构建发布之前拒绝一切增量更新
+ * </p>
+ * <p>
+ * 每个模型在JVM内保留一份不可变快照，推荐请求直接无锁读取本地快照；
+ * 本地快照每隔 refresh-interval-ms 只做一次轻量的 MGET（指针 + 修订号），
+ * 全量版本变化时才重新拉取并解码整个模型，只有修订号变化时只拉取新修订中改动的行并在快照上修补
+ * </p>
+ * <p>
+ * 模型缺失时的重建是"单飞"的：节点内同一个 key 只提交一个后台重建任务，其余请求共享同一个结果；
+ * 节点间通过 {key}:lock（SET NX PX）保证同一时间只有一个节点在重建，其他节点轮询等待新模型写入
+ * </p>
+ */
+@Slf4j
+@Service
+public class SimilarityModelStore {
+    private static final String VERSION_SUFFIX = ":version";
+    private static final String SEQUENCE_SUFFIX = ":seq";
+    private static final String VERSIONS_SUFFIX = ":versions";
+    private static final String REVISION_SUFFIX = ":rev";
+    private static final String ROWS_SUFFIX = ":rows";
+    private static final String CHANGED_SUFFIX = ":changed";
+    private static final String PINNED_SUFFIX = ":pinned";
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+    private static final String LOCK_SUFFIX = ":lock";
+    private static final long LOCK_POLL_INTERVAL_MS = 500;
+    // 只释放自己持有的锁，避免锁过期后误删其他节点的锁
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    // 分配新版本号，保证大于当前指针（兼容升级前只有 {key}:version 计数器的数据）
+    private static final DefaultRedisScript<Long> NEXT_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('get', KEYS[2]) or '0') " +
+            "local next = redis.call('incr', KEYS[1]) " +
+            "if next <= current then next = current + 1 redis.call('set', KEYS[1], next) end " +
+            "return next",
+            Long.class);
+    // 全量构建：登记到保留列表并前移指针；并发保存时只允许指针向更新的版本移动
+    // 发布成功时解除回滚钉住、删除升级前原地覆盖写入的模型 {key}，返回原指针；未发布返回 -1
+    private static final DefaultRedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('lpush', KEYS[2], ARGV[1]) " +
+            "local current = tonumber(redis.call('get', KEYS[1]) or '0') " +
+            "if current < tonumber(ARGV[1]) then " +
+            "redis.call('set', KEYS[1], ARGV[1]) redis.call('del', KEYS[3]) redis.call('del', KEYS[4]) return current end " +
+            "return -1",
+            Long.class);
+    // 增量补丁：指针被钉住返回 -2，指针或修订号已不是基础值返回 -1；
+    // 否则写入改动的行（ARGV[3] 起为 商品ID、单行编码 交替）并登记修订号，返回新修订号
+    private static final DefaultRedisScript<Long> PUBLISH_PATCH_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[2]) == 1 then return -2 end " +
+            "if tonumber(redis.call('get', KEYS[1]) or '0') ~= tonumber(ARGV[1]) then return -1 end " +
+            "if tonumber(redis.call('get', KEYS[3]) or '0') ~= tonumber(ARGV[2]) then return -1 end " +
+            "local revision = tonumber(ARGV[2]) + 1 " +
+            "for i = 3, #ARGV, 2 do " +
+            "redis.call('hset', KEYS[4], ARGV[i], ARGV[i + 1]) redis.call('zadd', KEYS[5], revision, ARGV[i]) end " +
+            "redis.call('set', KEYS[3], revision) return revision",
+            Long.class);
+    // 回滚：指针仍为预期版本时切换到目标版本并钉住，同时丢弃目标版本上的补丁，返回 1；指针已变化返回 0
+    private static final DefaultRedisScript<Long> ROLLBACK_SCRIPT = new DefaultRedisScript<>(
+            "if tonumber(redis.call('get', KEYS[1]) or '0') ~= tonumber(ARGV[1]) then return 0 end " +
+            "redis.call('set', KEYS[1], ARGV[2]) redis.call('set', KEYS[2], ARGV[2]) " +
+            "redis.call('del', KEYS[3], KEYS[4], KEYS[5]) return 1",
+            Long.class);
+
+    @Resource
+    private RedisTemplate<String, byte[]> modelRedisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RecommendProperties recommendProperties;
+    @Autowired
+    private ExecutorService similarityRebuildExecutor;
+
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicBoolean> refreshing = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<SimilarityModel>> rebuilding = new ConcurrentHashMap<>();
+
+    /**
+     * 读取模型（优先本地快照），不存在或格式不兼容时返回 null
+     * 快照过了刷新间隔时，只有一个线程去Redis检查版本，其余线程继续使用当前快照；
+     * 检查失败（Redis超时、数据无法解码等）时记录日志并继续使用当前快照，下一个刷新间隔再重试，
+     * 本地还没有快照时返回 null，由调用方降级
+     */
+    public SimilarityModel load(String key) {
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null) {
+            long interval = recommendProperties.getModel().getRefreshIntervalMs();
+            if (System.currentTimeMillis() - snapshot.checkedAt < interval) {
+                return snapshot.model;
+            }
+            AtomicBoolean flag = refreshing.computeIfAbsent(key, k -> new AtomicBoolean());
+            if (!flag.compareAndSet(false, true)) {
+                return snapshot.model;
+            }
+            try {
+                return refresh(key, snapshot).model;
+            } catch (RuntimeException e) {
+                log.warn("刷新相似度模型快照失败，继续使用本地版本 {}，key = {}：{}", snapshot.version, key, e.getMessage());
+                snapshots.put(key, new Snapshot(snapshot.model, snapshot.version, snapshot.revision,
+                        System.currentTimeMillis()));
+                return snapshot.model;
+            } finally {
+                flag.set(false);
+            }
+        }
+        try {
+            Snapshot loaded = refresh(key, null);
+            return loaded != null ? loaded.model : null;
+        } catch (RuntimeException e) {
+            log.warn("读取相似度模型失败，key = {}：{}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 强制检查版本后读取最新模型（增量更新在此基础上修改，避免覆盖其他节点的写入）
+     */
+    public SimilarityModel loadLatest(String key) {
+        Snapshot snapshot = refresh(key, snapshots.get(key));
+        return snapshot != null ? snapshot.model : null;
+    }
+
+    /**
+     * 读取模型，不存在时触发单飞重建并在 rebuild-wait-ms 内等待结果
+     * 本地已有快照时（即使Redis中的模型被清空）直接返回旧快照，不会触发重建
+     * @param builder 全量重建并调用 {@link #save} 的方法
+     * @return 模型；重建超时或失败时返回 null，由调用方降级
+     */
+    public SimilarityModel loadOrBuild(String key, Runnable builder) {
+        SimilarityModel model = load(key);
+        if (model != null) {
+            return model;
+        }
+        CompletableFuture<SimilarityModel> created = new CompletableFuture<>();
+        CompletableFuture<SimilarityModel> future = rebuilding.putIfAbsent(key, created);
+        if (future == null) {
+            future = created;
+            log.info("Redis中未找到相似度模型 key = {}，提交后台重建", key);
+            try {
+                similarityRebuildExecutor.execute(() -> {
+                    try {
+                        created.complete(rebuildOnce(key, builder));
+                    } catch (Throwable e) {
+                        created.completeExceptionally(e);
+                    } finally {
+                        rebuilding.remove(key, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rebuilding.remove(key, created);
+                created.completeExceptionally(e);
+            }
+        }
+        try {
+            return future.get(recommendProperties.getModel().getRebuildWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("等待相似度模型重建超时，key = {}", key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("相似度模型重建失败，key = {}", key, e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * 保存全量构建的模型为新版本：先完整写入 {key}:v{n}，再原子切换指针，并立即替换本地快照
+     * 全量构建登记到保留列表，可作为回滚目标；发布后解除回滚钉住，增量更新恢复
+     * 写入失败时抛出异常，指针仍指向旧版本
+     */
+    public void save(String key, SimilarityModel model) {
+        byte[] bytes = SimilarityModelCodec.encode(model, recommendProperties.getModel().isCompress());
+        long version = nextVersion(key);
+        modelRedisTemplate.opsForValue().set(versionKey(key, version), bytes);
+        Long previous = stringRedisTemplate.execute(PUBLISH_SCRIPT,
+                Arrays.asList(key + VERSION_SUFFIX, key + VERSIONS_SUFFIX, key, key + PINNED_SUFFIX),
+                Long.toString(version));
+        if (previous != null && previous >= 0) {
+            snapshots.put(key, new Snapshot(model, version, 0L, System.currentTimeMillis()));
+            log.info("相似度模型已写入Redis，key = {}，版本 = {}，商品数 = {}，近邻条目数 = {}，{} 字节",
+                    key, version, model.size(), model.entryCount(), bytes.length);
+        } else {
+            log.warn("相似度模型版本 {} 写入时已有更新的版本发布，key = {}，本次写入不生效", version, key);
+        }
+        cleanupAsync(key);
+    }
+
+    /**
+     * 增量更新：以本地最新快照（全量版本 + 修订号）为基础应用 change，只把与基础模型相比改动过的行
+     * 作为一次修订比较并交换地发布，写入量与改动的行数成正比，与模型大小无关
+     * 其他节点抢先发布时，在其结果上重新应用 change（change 须只依赖传入的基础模型），最多重试若干次
+     * @param change 由基础模型生成新模型，不得修改基础模型，未改动的行须与基础模型共享同一对象（写时复制）
+     * @return 是否已发布；没有模型、回滚后被钉住或多次冲突时返回 false，由下一次全量构建兜底
+     */
+    public boolean update(String key, UnaryOperator<SimilarityModel> change) {
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Snapshot base = refresh(key, snapshots.get(key));
+            if (base == null) {
+                return false;
+            }
+            SimilarityModel model = change.apply(base.model);
+            Map<Integer, NeighborList> changed = model.diff(base.model);
+            if (changed.isEmpty()) {
+                return true;
+            }
+            List<byte[]> args = new ArrayList<>(2 + changed.size() * 2);
+            args.add(toBytes(base.version));
+            args.add(toBytes(base.revision));
+            for (Map.Entry<Integer, NeighborList> row : changed.entrySet()) {
+                args.add(toBytes(row.getKey()));
+                args.add(SimilarityModelCodec.encodeRow(row.getValue()));
+            }
+            Long result = modelRedisTemplate.execute(PUBLISH_PATCH_SCRIPT,
+                    Arrays.asList(key + VERSION_SUFFIX, key + PINNED_SUFFIX, revisionKey(key, base.version),
+                            versionKey(key, base.version) + ROWS_SUFFIX, versionKey(key, base.version) + CHANGED_SUFFIX),
+                    args.toArray());
+            if (result != null && result > 0) {
+                snapshots.put(key, new Snapshot(model, base.version, result, System.currentTimeMillis()));
+                return true;
+            }
+            if (Long.valueOf(-2L).equals(result)) {
+                log.info("相似度模型 key = {} 已回滚，下一次全量构建前不做增量更新", key);
+                return false;
+            }
+        }
+        log.warn("相似度模型 key = {} 增量更新连续 {} 次发生版本冲突，放弃本次更新", key, MAX_UPDATE_ATTEMPTS);
+        return false;
+    }
+
+    /**
+     * 是否处于回滚后的钉住状态（下一次全量构建发布前不接受增量更新）
+     */
+    public boolean isPinned(String key) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(key + PINNED_SUFFIX));
+    }
+
+    /**
+     * 当前保留的版本号（新到旧）、指针所在版本及其上的补丁修订号
+     */
+    public ModelVersions versions(String key) {
+        List<String> retained = stringRedisTemplate.opsForList().range(key + VERSIONS_SUFFIX, 0, -1);
+        List<Long> versions = new ArrayList<>();
+        if (retained != null) {
+            for (String version : retained) {
+                versions.add(Long.valueOf(version));
+            }
+        }
+        long current = readVersion(key);
+        long revision = parseLong(stringRedisTemplate.opsForValue().get(revisionKey(key, current)));
+        return new ModelVersions(current, revision, versions, isPinned(key));
+    }
+
+    /**
+     * 回滚到当前模型所基于的全量构建之前的一次全量构建，并立即替换本地快照
+     * 当前模型之上的增量补丁随指针离开而失效，目标版本上残留的补丁也一并丢弃；
+     * 指针切换与钉住在同一个脚本中完成，回滚后直到下一次全量构建都不再接受增量更新
+     * @return 回滚后的版本号
+     * @throws BusinessException 没有可回滚的版本，或回滚期间模型版本发生变化
+     */
+    public long rollback(String key) {
+        ModelVersions versions = versions(key);
+        long current = versions.getCurrent();
+        boolean baseFound = false;
+        for (Long version : versions.getRetained()) {
+            if (!baseFound) {
+                // 保留列表新到旧，第一个不大于指针的版本即当前模型
+                baseFound = version <= current;
+                continue;
+            }
+            SimilarityModel model = fetch(key, version);
+            if (model == null) {
+                continue;
+            }
+            Long result = stringRedisTemplate.execute(ROLLBACK_SCRIPT,
+                    Arrays.asList(key + VERSION_SUFFIX, key + PINNED_SUFFIX, revisionKey(key, version),
+                            versionKey(key, version) + ROWS_SUFFIX, versionKey(key, version) + CHANGED_SUFFIX),
+                    Long.toString(current), version.toString());
+            if (!Long.valueOf(1L).equals(result)) {
+                throw new BusinessException("相似度模型版本已变化，请刷新后重试");
+            }
+            snapshots.put(key, new Snapshot(model, version, 0L, System.currentTimeMillis()));
+            log.warn("相似度模型已回滚，key = {}，版本 {} -> {}，下一次全量构建前暂停增量更新", key, current, version);
+            return version;
+        }
+        throw new BusinessException("没有可回滚的相似度模型版本");
+    }
+
+    private long nextVersion(String key) {
+        Long version = stringRedisTemplate.execute(NEXT_VERSION_SCRIPT,
+                Arrays.asList(key + SEQUENCE_SUFFIX, key + VERSION_SUFFIX));
+        if (version == null) {
+            throw new IllegalStateException("无法分配相似度模型版本号，key = " + key);
+        }
+        return version;
+    }
+
+    /**
+     * 在后台线程中删除超出保留数量的旧版本（当前指针所在的版本不会被删除）
+     */
+    private void cleanupAsync(String key) {
+        try {
+            similarityRebuildExecutor.execute(() -> {
+                try {
+                    cleanup(key);
+                } catch (Exception e) {
+                    log.warn("清理相似度模型旧版本失败，key = {}：{}", key, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("相似度模型旧版本清理任务未能提交，key = {}，将在下次保存时清理", key);
+        }
+    }
+
+    private void cleanup(String key) {
+        int retained = Math.max(1, recommendProperties.getModel().getRetainedVersions());
+        String listKey = key + VERSIONS_SUFFIX;
+        List<String> stale = stringRedisTemplate.opsForList().range(listKey, retained, -1);
+        if (stale == null || stale.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.opsForList().trim(listKey, 0, retained - 1);
+        long current = readVersion(key);
+        List<String> keys = new ArrayList<>(stale.size());
+        for (String version : stale) {
+            long stale = Long.parseLong(version);
+            if (stale != current) {
+                keys.add(versionKey(key, stale));
+                keys.add(revisionKey(key, stale));
+                keys.add(versionKey(key, stale) + ROWS_SUFFIX);
+                keys.add(versionKey(key, stale) + CHANGED_SUFFIX);
+            }
+        }
+        modelRedisTemplate.delete(keys);
+        log.info("已清理相似度模型旧版本，key = {}，{} 个版本", key, keys.size() / 4);
+    }
+
+    /**
+     * 在后台线程中执行一次重建：抢到集群锁的节点负责构建，其余节点等待构建结果写入Redis
+     */
+    private SimilarityModel rebuildOnce(String key, Runnable builder) throws InterruptedException {
+        // 上一轮重建可能刚刚完成
+        SimilarityModel model = loadLatest(key);
+        if (model != null) {
+            return model;
+        }
+        String lockKey = key + LOCK_SUFFIX;
+        String token = UUID.randomUUID().toString();
+        long lockTtl = recommendProperties.getModel().getRebuildLockTtlMs();
+        if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                .setIfAbsent(lockKey, token, lockTtl, TimeUnit.MILLISECONDS))) {
+            try {
+                model = loadLatest(key);
+                if (model != null) {
+                    return model;
+                }
+                builder.run();
+                return loadLatest(key);
+            } finally {
+                stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT, Collections.singletonList(lockKey), token);
+            }
+        }
+        log.info("其他节点正在重建相似度模型 key = {}，等待其写入", key);
+        long deadline = System.currentTimeMillis() + lockTtl;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(LOCK_POLL_INTERVAL_MS);
+            model = loadLatest(key);
+            if (model != null || !Boolean.TRUE.equals(stringRedisTemplate.hasKey(lockKey))) {
+                return model;
+            }
+        }
+        return loadLatest(key);
+    }
+
+    /**
+     * 对比Redis中的版本号和修订号：都未变只更新检查时间；只有修订号变化时拉取新修订改动的行修补快照；
+     * 全量版本变化时重新拉取整个模型及其上的全部补丁
+     * @return 刷新后的快照，Redis中没有模型时返回 null
+     */
+    private Snapshot refresh(String key, Snapshot current) {
+        long now = System.currentTimeMillis();
+        if (current != null) {
+            List<String> values = stringRedisTemplate.opsForValue()
+                    .multiGet(Arrays.asList(key + VERSION_SUFFIX, revisionKey(key, current.version)));
+            long version = parseLong(values == null ? null : values.get(0));
+            long revision = parseLong(values == null ? null : values.get(1));
+            if (current.version == version) {
+                if (current.revision == revision) {
+                    Snapshot checked = new Snapshot(current.model, version, revision, now);
+                    snapshots.put(key, checked);
+                    return checked;
+                }
+                Snapshot patched = new Snapshot(applyPatches(key, version, current.model, current.revision, revision),
+                        version, revision, now);
+                snapshots.put(key, patched);
+                return patched;
+            }
+        }
+        long version = readVersion(key);
+        SimilarityModel model = fetch(key, version);
+        if (model == null) {
+            // Redis中已无模型（如被清空），保留旧快照作为兜底
+            return current;
+        }
+        long revision = parseLong(stringRedisTemplate.opsForValue().get(revisionKey(key, version)));
+        model = applyPatches(key, version, model, 0L, revision);
+        Snapshot loaded = new Snapshot(model, version, revision, now);
+        snapshots.put(key, loaded);
+        log.info("本地相似度模型快照已刷新，key = {}，版本 = {}，修订 = {}，商品数 = {}", key, version, revision, model.size());
+        return loaded;
+    }
+
+    /**
+     * 在模型上应用修订号 (from, to] 之间改动过的行
+     * 行的值总是该商品的最新内容，读到比 to 更新的值也无妨，下一次刷新会补齐同一修订的其余行
+     */
+    private SimilarityModel applyPatches(String key, long version, SimilarityModel model, long from, long to) {
+        if (to <= from) {
+            return model;
+        }
+        Set<String> ids = stringRedisTemplate.opsForZSet()
+                .rangeByScore(versionKey(key, version) + CHANGED_SUFFIX, from + 1, to);
+        if (ids == null || ids.isEmpty()) {
+            return model;
+        }
+        List<String> fields = new ArrayList<>(ids);
+        HashOperations<String, String, byte[]> rows = modelRedisTemplate.opsForHash();
+        List<byte[]> values = rows.multiGet(versionKey(key, version) + ROWS_SUFFIX, fields);
+        Map<Integer, NeighborList> updates = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            byte[] value = values.get(i);
+            if (value != null) {
+                updates.put(Integer.valueOf(fields.get(i)), SimilarityModelCodec.decodeRow(value));
+            }
+        }
+        return model.patch(updates);
+    }
+
+    private long readVersion(String key) {
+        String version = stringRedisTemplate.opsForValue().get(key + VERSION_SUFFIX);
+        return version != null ? Long.parseLong(version) : 0L;
+    }
+
+    private static String versionKey(String key, long version) {
+        return key + ":v" + version;
+    }
+
+    private static String revisionKey(String key, long version) {
+        return versionKey(key, version) + REVISION_SUFFIX;
+    }
+
+    private static long parseLong(String value) {
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    private static byte[] toBytes(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private SimilarityModel fetch(String key, long version) {
+        byte[] bytes = version > 0 ? modelRedisTemplate.opsForValue().get(versionKey(key, version)) : null;
+        if (bytes == null) {
+            // 兼容升级前原地覆盖写入的模型，首次发布新版本时即被删除
+            bytes = modelRedisTemplate.opsForValue().get(key);
+        }
+        if (bytes == null) {
+            return null;
+        }
+        if (!SimilarityModelCodec.isEncoded(bytes)) {
+            log.warn("Redis中 key = {} 的数据不是可识别的模型格式，按不存在处理", key);
+            return null;
+        }
+        try {
+            return SimilarityModelCodec.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            // 如滚动发布期间读到新格式版本写入的模型
+            log.warn("Redis中 key = {} 版本 {} 的模型无法解码，按不存在处理：{}", key, version, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 模型版本信息：指针所在的版本及其上的补丁修订号、保留的全量构建版本（新到旧），以及是否因回滚暂停了增量更新
+     */
+    @Data
+    @AllArgsConstructor
+    public static class ModelVersions {
+        private long current;
+        private long revision;
+        private List<Long> retained;
+        private boolean pinned;
+    }
+
+    /**
+     * 不可变快照：模型 + 对应的Redis全量版本号与补丁修订号 + 最近一次检查版本的时间
+     */
+    private static final class Snapshot {
+        final SimilarityModel model;
+        final long version;
+        final long revision;
+        final long checkedAt;
+
+        Snapshot(SimilarityModel model, long version, long revision, long checkedAt) {
+            this.model = model;
+            this.version = version;
+            this.revision = revision;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.RecommendItem;
+import org.lt.commushop.domain.Hander.UserBehaviorData;
+import org.lt.commushop.domain.Hander.UserBehaviorEvent;
+import org.lt.commushop.exception.BusinessException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热门/趋势商品推荐（滑动窗口计数）
+ * <p>
+ * 下单、收藏提交后按小时分桶累加：销量写入有序集合 recommend:trending:sales:{小时}，
+ * 收藏数写入 recommend:trending:favorites:{小时}，分桶保留 7 天多一小时后自动过期。
+ * 查询某个窗口（1h / 24h / 7d）时，用 ZUNIONSTORE 按权重把窗口内的分桶合并到 recommend:trending:{窗口}，
+ * 合并结果缓存 window-refresh-ms，之后的 Top-N 查询只是一次 O(log n + N) 的 ZREVRANGE。
+ * 窗口按整小时滑动，1h 窗口包含当前小时和上一小时。
+ * </p>
+ * 没有历史行为的用户以此作为兜底，混合推荐中作为第三路结果参与融合
+ */
+@Slf4j
+@Service
+public class TrendingService {
+    private static final String SALES_PREFIX = "recommend:trending:sales:";
+    private static final String FAVORITES_PREFIX = "recommend:trending:favorites:";
+    private static final String WINDOW_PREFIX = "recommend:trending:";
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long BUCKET_TTL_HOURS = 7 * 24 + 1;
+
+    /**
+     * 支持的统计窗口
+     */
+    public enum Window {
+        HOUR("1h", 2), DAY("24h", 24), WEEK("7d", 7 * 24);
+
+        private final String code;
+        private final int buckets;
+
+        Window(String code, int buckets) {
+            this.code = code;
+            this.buckets = buckets;
+        }
+
+        public static Window of(String code) {
+            for (Window window : values()) {
+                if (window.code.equalsIgnoreCase(code)) {
+                    return window;
+                }
+            }
+            throw new BusinessException("不支持的统计窗口：" + code + "（可选 1h、24h、7d）");
+        }
+    }
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ProductCatalog productCatalog;
+    @Autowired
+    private UserBehaviorLoader userBehaviorLoader;
+    @Autowired
+    private RecommendProperties recommendProperties;
+
+    // 本节点最近一次合并各窗口的时间
+    private final Map<Window, Long> mergedAt = new ConcurrentHashMap<>();
+
+    /**
+     * 下单、收藏提交后累加到对应小时的分桶（评价不计入）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBehaviorEvent(UserBehaviorEvent event) {
+        String prefix;
+        if (event.getType() == UserBehaviorEvent.Type.PURCHASE) {
+            prefix = SALES_PREFIX;
+        } else if (event.getType() == UserBehaviorEvent.Type.FAVORITE) {
+            prefix = FAVORITES_PREFIX;
+        } else {
+            return;
+        }
+        long millis = event.getTime() != null
+                ? event.getTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+        String bucket = prefix + millis / HOUR_MS;
+        try {
+            stringRedisTemplate.opsForZSet().incrementScore(bucket, event.getProductId().toString(), event.getAmount());
+            stringRedisTemplate.expire(bucket, BUCKET_TTL_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("热门商品计数失败，事件：{}，{}", event, e.getMessage());
+        }
+    }
+
+    /**
+     * 窗口内最热门的在售商品，分数按第一名归一化到 (0, 1]
+     */
+    public List<RecommendItem> trending(Window window, int topN) {
+        String key = merge(window);
+        // 多取一些，抵消已下架商品
+        Set<ZSetOperations.TypedTuple<String>> tuples =
+                stringRedisTemplate.opsForZSet().reverseRangeWithScores(key, 0, topN * 2L - 1);
+        if (tuples == null || tuples.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<RecommendItem> items = new ArrayList<>(topN);
+        double top = 0.0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            Integer productId = Integer.valueOf(tuple.getValue());
+            double score = tuple.getScore() == null ? 0.0 : tuple.getScore();
+            if (score <= 0 || !productCatalog.isLive(productId)) {
+                continue;
+            }
+            if (top == 0.0) {
+                top = score;
+            }
+            items.add(new RecommendItem(productId, score / top));
+            if (items.size() == topN) {
+                break;
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 为某个用户推荐热门商品：去掉用户已购买、收藏、评价过的商品
+     */
+    public List<RecommendItem> recommendProducts(Integer userId, int topN) {
+        return recommendProducts(userBehaviorLoader.load(userId), topN);
+    }
+
+    /**
+     * 使用已加载的行为数据推荐热门商品（混合推荐时行为数据由调用方统一加载）
+     */
+    public List<RecommendItem> recommendProducts(UserBehaviorData behaviorData, int topN) {
+        Window window = Window.of(recommendProperties.getTrending().getWindow());
+        return excludeOwned(trending(window, topN + behaviorData.getBehaviors().size()), behaviorData, topN);
+    }
+
+    /**
+     * 从热门列表中去掉用户已有行为的商品后取前 topN 个（批量推荐时热门列表每批只读一次）
+     * 热门列表长度应至少为 topN + 用户行为商品数，否则结果可能不足 topN
+     */
+    public static List<RecommendItem> excludeOwned(List<RecommendItem> trendingItems, UserBehaviorData behaviorData, int topN) {
+        List<RecommendItem> items = new ArrayList<>(Math.min(trendingItems.size(), topN));
+        for (RecommendItem item : trendingItems) {
+            if (items.size() == topN) {
+                break;
+            }
+            if (!behaviorData.getBehaviors().containsKey(item.getProductId())) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 把窗口内的小时分桶按权重合并为窗口有序集合，合并结果缓存 window-refresh-ms
+     */
+    private String merge(Window window) {
+        String key = WINDOW_PREFIX + window.code;
+        RecommendProperties.Trending trending = recommendProperties.getTrending();
+        long now = System.currentTimeMillis();
+        Long last = mergedAt.get(window);
+        if (last != null && now - last < trending.getWindowRefreshMs()) {
+            return key;
+        }
+        long currentHour = now / HOUR_MS;
+        List<String> buckets = new ArrayList<>(window.buckets * 2);
+        for (long hour = currentHour - window.buckets + 1; hour <= currentHour; hour++) {
+            buckets.add(SALES_PREFIX + hour);
+        }
+        for (long hour = currentHour - window.buckets + 1; hour <= currentHour; hour++) {
+            buckets.add(FAVORITES_PREFIX + hour);
+        }
+        double[] weights = new double[buckets.size()];
+        for (int i = 0; i < buckets.size(); i++) {
+            weights[i] = i < window.buckets ? trending.getPurchaseWeight() : trending.getFavoriteWeight();
+        }
+        stringRedisTemplate.opsForZSet().unionAndStore(buckets.get(0), buckets.subList(1, buckets.size()), key,
+                RedisZSetCommands.Aggregate.SUM, RedisZSetCommands.Weights.of(weights));
+        stringRedisTemplate.expire(key, trending.getWindowRefreshMs() * 2, TimeUnit.MILLISECONDS);
+        mergedAt.put(window, now);
+        return key;
+    }
+}
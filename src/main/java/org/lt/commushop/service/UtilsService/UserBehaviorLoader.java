@@ -0,0 +1,166 @@
+package org.lt.commushop.service.UtilsService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.ProductBehavior;
+import org.lt.commushop.domain.Hander.UserBehaviorData;
+import org.lt.commushop.domain.Hander.UserBehaviorEvent;
+import org.lt.commushop.domain.Hander.UserBehaviorRow;
+import org.lt.commushop.mapper.UserBehaviorMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户行为画像加载服务（协同过滤、基于内容、混合推荐共用）
+ * 购买、收藏、评价三类记录合并为一条 UNION ALL 查询，结果按用户做短时缓存；
+ * 用户下单、收藏、评价后收到行为事件即失效该用户的缓存
+ * 返回的 UserBehaviorData 可能被多个请求共享，调用方只读不改
+ */
+@Slf4j
+@Service
+public class UserBehaviorLoader {
+    @Autowired
+    private UserBehaviorMapper userBehaviorMapper;
+    @Autowired
+    private RecommendProperties recommendProperties;
+
+    private final ConcurrentMap<Integer, CachedBehavior> cache = new ConcurrentHashMap<>();
+    // 每次失效递增；查询期间发生过失效时不回填缓存，避免把旧数据写回
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 获取用户行为数据
+     */
+    public UserBehaviorData load(Integer userId) {
+        long now = System.currentTimeMillis();
+        CachedBehavior cached = cache.get(userId);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.data;
+        }
+        long stamp = invalidations.get();
+        UserBehaviorData data = query(userId);
+        RecommendProperties.Behavior config = recommendProperties.getBehavior();
+        if (cache.size() >= config.getCacheMaxEntries()) {
+            cache.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+        if (cache.size() < config.getCacheMaxEntries() && invalidations.get() == stamp) {
+            cache.put(userId, new CachedBehavior(data, now + config.getCacheTtlMs()));
+        }
+        return data;
+    }
+
+    /**
+     * 批量获取一批用户的行为数据：命中缓存的直接返回，其余用户合并为一次 IN 查询
+     * 查询结果同样回填缓存；没有任何行为的用户返回空的 UserBehaviorData
+     */
+    public Map<Integer, UserBehaviorData> loadAll(Collection<Integer> userIds) {
+        long now = System.currentTimeMillis();
+        Map<Integer, UserBehaviorData> result = new HashMap<>(userIds.size() * 2);
+        List<Integer> misses = new ArrayList<>();
+        for (Integer userId : userIds) {
+            CachedBehavior cached = cache.get(userId);
+            if (cached != null && cached.expiresAt > now) {
+                result.put(userId, cached.data);
+            } else if (!result.containsKey(userId)) {
+                result.put(userId, null);
+                misses.add(userId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+        long stamp = invalidations.get();
+        Map<Integer, UserBehaviorData> loaded = new HashMap<>(misses.size() * 2);
+        for (Integer userId : misses) {
+            loaded.put(userId, new UserBehaviorData());
+        }
+        for (UserBehaviorRow row : userBehaviorMapper.selectByUserIds(misses)) {
+            UserBehaviorData data = loaded.get(row.getUserId());
+            if (data != null) {
+                fold(data, row);
+            }
+        }
+        RecommendProperties.Behavior config = recommendProperties.getBehavior();
+        if (cache.size() + loaded.size() > config.getCacheMaxEntries()) {
+            cache.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+        for (Map.Entry<Integer, UserBehaviorData> entry : loaded.entrySet()) {
+            result.put(entry.getKey(), entry.getValue());
+            if (cache.size() < config.getCacheMaxEntries() && invalidations.get() == stamp) {
+                cache.put(entry.getKey(), new CachedBehavior(entry.getValue(), now + config.getCacheTtlMs()));
+            }
+        }
+        log.info("批量加载用户行为数据：{} 个用户，其中 {} 个查库", userIds.size(), misses.size());
+        return result;
+    }
+
+    /**
+     * 失效某个用户的缓存
+     */
+    public void invalidate(Integer userId) {
+        invalidations.incrementAndGet();
+        cache.remove(userId);
+    }
+
+    /**
+     * 下单、收藏、评价提交后失效对应用户的缓存
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBehaviorEvent(UserBehaviorEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    private UserBehaviorData query(Integer userId) {
+        UserBehaviorData data = new UserBehaviorData();
+        List<UserBehaviorRow> rows = userBehaviorMapper.selectByUserId(userId);
+        for (UserBehaviorRow row : rows) {
+            fold(data, row);
+        }
+        log.info("用户userId = {} 的行为数据：{}", userId, data);
+        return data;
+    }
+
+    /**
+     * 把一条行为明细合并进用户画像
+     */
+    private static void fold(UserBehaviorData data, UserBehaviorRow row) {
+        ProductBehavior behavior = data.getBehaviors().computeIfAbsent(
+                row.getProductId(),
+                k -> new ProductBehavior()
+        );
+        switch (row.getBehaviorType()) {
+            case UserBehaviorRow.PURCHASE:
+                behavior.setPurchaseCount(behavior.getPurchaseCount() + row.getAmount());
+                break;
+            case UserBehaviorRow.FAVORITE:
+                behavior.setFavorited(true);
+                behavior.setFavoriteTime(row.getBehaviorTime());
+                break;
+            case UserBehaviorRow.RATING:
+                behavior.setRating(row.getScore());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static final class CachedBehavior {
+        final UserBehaviorData data;
+        final long expiresAt;
+
+        CachedBehavior(UserBehaviorData data, long expiresAt) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 调整余弦相似度（协同过滤，单个行为通道）
+ * 在共同用户上先减去各用户的平均权重再求余弦，消除"买得多的用户"对相似度的放大；负相关截断为 0
+ * 需要累加器以 trackCentered = true 创建
+ */
+public class AdjustedCosineKernel implements SimilarityKernel<RowAccumulator> {
+    private final int channel;
+
+    public AdjustedCosineKernel(int channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void score(RowAccumulator acc, int row, int[] candidates, int count, double[] out) {
+        if (!acc.tracksCentered()) {
+            throw new IllegalStateException("调整余弦需要开启 trackCentered 的累加器");
+        }
+        double[][] stats = acc.centered[channel];
+        double[] cross = stats[RowAccumulator.CROSS];
+        double[] selfSquare = stats[RowAccumulator.SELF_SQUARE];
+        double[] otherSquare = stats[RowAccumulator.OTHER_SQUARE];
+        for (int k = 0; k < count; k++) {
+            int other = candidates[k];
+            double denominator = selfSquare[other] * otherSquare[other];
+            out[k] = cross[other] <= 0.0 || denominator == 0.0 ? 0.0 : Math.min(1.0, cross[other] / Math.sqrt(denominator));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多个核函数的加权融合：score = Σ weight_i · kernel_i
+ * 权重为 0 的核函数在构建时即被丢弃；每个线程复用一份中间分数数组
+ */
+public class BlendedKernel<C> implements SimilarityKernel<C> {
+    private final List<SimilarityKernel<C>> kernels = new ArrayList<>();
+    private double[] weights = new double[0];
+    private final ThreadLocal<double[]> buffer = ThreadLocal.withInitial(() -> new double[64]);
+
+    /**
+     * 追加一个分量，weight 为 0 时忽略
+     */
+    public BlendedKernel<C> add(SimilarityKernel<C> kernel, double weight) {
+        if (weight != 0.0) {
+            kernels.add(kernel);
+            double[] grown = new double[weights.length + 1];
+            System.arraycopy(weights, 0, grown, 0, weights.length);
+            grown[weights.length] = weight;
+            weights = grown;
+        }
+        return this;
+    }
+
+    @Override
+    public void score(C context, int row, int[] candidates, int count, double[] out) {
+        for (int k = 0; k < count; k++) {
+            out[k] = 0.0;
+        }
+        double[] partial = buffer.get();
+        if (partial.length < count) {
+            partial = new double[Math.max(count, partial.length * 2)];
+            buffer.set(partial);
+        }
+        for (int i = 0; i < kernels.size(); i++) {
+            kernels.get(i).score(context, row, candidates, count, partial);
+            double weight = weights[i];
+            for (int k = 0; k < count; k++) {
+                out[k] += weight * partial[k];
+            }
+        }
+    }
+}
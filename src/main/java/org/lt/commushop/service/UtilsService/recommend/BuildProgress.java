@@ -0,0 +1,74 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 相似度矩阵构建进度与取消标记
+ * <p>
+ * 构建线程按行递增已处理行数，并在每行开始前检查取消标记；
+ * 查询线程可随时读取进度或请求取消。取消后构建在下一行开始时抛出 {@link CancellationException}，
+ * 此时尚未写入Redis，旧模型保持不变。
+ * </p>
+ */
+public class BuildProgress {
+    private final AtomicInteger processedRows = new AtomicInteger();
+    private volatile int totalRows;
+    private volatile String phase = "等待";
+    private volatile boolean cancelled;
+
+    /**
+     * 进入新的阶段（如"构建索引"、"计算相似度"、"保存模型"）
+     */
+    public void phase(String phase) {
+        checkCancelled();
+        this.phase = phase;
+    }
+
+    /**
+     * 开始逐行计算
+     */
+    public void start(int totalRows) {
+        this.totalRows = totalRows;
+        processedRows.set(0);
+    }
+
+    public void rowDone() {
+        processedRows.incrementAndGet();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 已请求取消时抛出 {@link CancellationException}
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("构建已取消");
+        }
+    }
+
+    public int processedRows() {
+        return processedRows.get();
+    }
+
+    public int totalRows() {
+        return totalRows;
+    }
+
+    public String phase() {
+        return phase;
+    }
+
+    /** 行计算进度百分比，尚未开始时为0 */
+    public double percent() {
+        int total = totalRows;
+        return total == 0 ? 0.0 : Math.min(100.0, processedRows.get() * 100.0 / total);
+    }
+}
@@ -0,0 +1,77 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.Arrays;
+
+/**
+ * 候选行缓冲区（去重 + 顺序列表）
+ * <p>
+ * 每个线程复用一个实例：用递增的 stamp 标记已加入的行，清空时不需要遍历整个标记数组。
+ * 同时提供复用的分数缓冲区，供 {@link SimilarityKernel} 对整批候选一次打分。
+ * </p>
+ */
+public class CandidateBuffer {
+    private int[] rows = new int[64];
+    private int[] marks = new int[0];
+    private int stamp;
+    private int size;
+    private double[] scores = new double[0];
+
+    public void reset(int rowCount) {
+        if (marks.length < rowCount) {
+            marks = new int[rowCount];
+            stamp = 0;
+        }
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+        size = 0;
+    }
+
+    public void add(int row) {
+        if (marks[row] == stamp) {
+            return;
+        }
+        marks[row] = stamp;
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+        rows[size++] = row;
+    }
+
+    /**
+     * 原地去掉已删除的行，保持其余候选的顺序
+     */
+    public void retainLive(ContentFeatures features) {
+        int kept = 0;
+        for (int k = 0; k < size; k++) {
+            if (features.isLive(rows[k])) {
+                rows[kept++] = rows[k];
+            }
+        }
+        size = kept;
+    }
+
+    /** 候选数量 */
+    public int size() {
+        return size;
+    }
+
+    /** 第 k 个候选行 */
+    public int rowAt(int k) {
+        return rows[k];
+    }
+
+    /** 候选行数组，有效范围 [0, size())，不要修改 */
+    public int[] rows() {
+        return rows;
+    }
+
+    /** 复用的分数缓冲区，长度至少为 size() */
+    public double[] scores() {
+        if (scores.length < size) {
+            scores = new double[Math.max(size, scores.length * 2)];
+        }
+        return scores;
+    }
+}
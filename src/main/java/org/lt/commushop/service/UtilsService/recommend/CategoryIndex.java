@@ -0,0 +1,84 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 商品 -> 类别位图索引（基于内容的类别相似度用）
+ * <p>
+ * 类别ID映射为连续的位序号，每个商品的类别集合保存为一个 long[] 位图。
+ * 类别 Jaccard = popcount(a AND b) / popcount(a OR b)，全部在内存中按字计算，不再逐对查库。
+ * </p>
+ * 非线程安全：写入需由调用方串行化，构建完成后的并发只读是安全的。
+ */
+public class CategoryIndex {
+    private static final long[] NO_CATEGORY = new long[0];
+
+    private final Map<Integer, Integer> categoryBits = new HashMap<>();
+    private final Map<Integer, long[]> productBits = new HashMap<>();
+
+    /**
+     * 记录商品属于某个类别
+     */
+    public void add(int productId, int categoryId) {
+        Integer bit = categoryBits.get(categoryId);
+        if (bit == null) {
+            bit = categoryBits.size();
+            categoryBits.put(categoryId, bit);
+        }
+        int word = bit >>> 6;
+        long[] bits = productBits.get(productId);
+        if (bits == null || bits.length <= word) {
+            bits = bits == null ? new long[word + 1] : Arrays.copyOf(bits, word + 1);
+            productBits.put(productId, bits);
+        }
+        bits[word] |= 1L << bit;
+    }
+
+    /**
+     * 用新的类别集合替换商品原有的类别（商品修改时使用）
+     */
+    public void replace(int productId, Iterable<Integer> categoryIds) {
+        productBits.remove(productId);
+        for (Integer categoryId : categoryIds) {
+            add(productId, categoryId);
+        }
+    }
+
+    /**
+     * 商品的类别位图，没有类别时返回空数组（不要修改返回值）
+     */
+    public long[] bitsOf(int productId) {
+        long[] bits = productBits.get(productId);
+        return bits != null ? bits : NO_CATEGORY;
+    }
+
+    /** 已收录的类别数量 */
+    public int categoryCount() {
+        return categoryBits.size();
+    }
+
+    /**
+     * 两个类别位图的 Jaccard 相似度，任一为空时返回 0
+     */
+    public static double jaccard(long[] a, long[] b) {
+        int common = Math.min(a.length, b.length);
+        int intersection = 0;
+        int union = 0;
+        for (int i = 0; i < common; i++) {
+            intersection += Long.bitCount(a[i] & b[i]);
+            union += Long.bitCount(a[i] | b[i]);
+        }
+        for (int i = common; i < a.length; i++) {
+            union += Long.bitCount(a[i]);
+        }
+        for (int i = common; i < b.length; i++) {
+            union += Long.bitCount(b[i]);
+        }
+        if (intersection == 0) {
+            return 0.0;
+        }
+        return (double) intersection / union;
+    }
+}
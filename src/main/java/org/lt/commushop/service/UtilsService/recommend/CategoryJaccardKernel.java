@@ -0,0 +1,14 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 类别相似度（基于内容）：类别位图的 Jaccard，任一商品没有类别时为 0
+ */
+public class CategoryJaccardKernel implements SimilarityKernel<ContentFeatures> {
+    @Override
+    public void score(ContentFeatures features, int row, int[] candidates, int count, double[] out) {
+        long[] categories = features.categories(row);
+        for (int k = 0; k < count; k++) {
+            out[k] = CategoryIndex.jaccard(categories, features.categories(candidates[k]));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用户-商品倒排索引（协同过滤共现计算用）
+ * <p>
+ * 商品、用户分别映射为连续的槽位(slot)，每个行为通道(购买/收藏)保存：
+ * 1. 用户 -> 商品列表（带权重），即倒排表；
+ * 2. 商品 -> 用户列表（仅槽位）；
+ * 3. 每个商品向量的平方范数 Σw²，以及每个用户的权重和（用于调整余弦的用户均值）。
+ * 计算某一行相似度时，只沿着"商品 -> 用户 -> 商品"遍历，
+ * 因此只会触达至少有一个共同用户的商品对，总代价与行为条数相关，而非商品数的平方。
+ * </p>
+ * 非线程安全：写入需由调用方串行化，构建完成后的并发只读是安全的。
+ */
+public class CoOccurrenceIndex {
+    /** 购买通道 */
+    public static final int PURCHASE = 0;
+    /** 收藏通道 */
+    public static final int FAVORITE = 1;
+    private static final int CHANNEL_COUNT = 2;
+
+    private final Map<Integer, Integer> productSlots = new HashMap<>();
+    private final Map<Integer, Integer> userSlots = new HashMap<>();
+    private int[] productIds = new int[16];
+    private int productCount;
+    private int userCount;
+    private final Channel[] channels = new Channel[CHANNEL_COUNT];
+
+    public CoOccurrenceIndex() {
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            channels[i] = new Channel();
+        }
+    }
+
+    /**
+     * 累加一条行为：同一用户对同一商品的权重求和（如多次购买的数量）
+     * @return 累加前的权重
+     */
+    public double accumulate(int channel, int productId, int userId, double weight) {
+        int p = productSlot(productId);
+        int u = userSlot(userId);
+        return channels[channel].add(p, u, weight, true);
+    }
+
+    /**
+     * 写入一条行为：已存在则保持原值（如收藏这种二元行为）
+     * @return 写入前的权重，0 表示此前不存在
+     */
+    public double putIfAbsent(int channel, int productId, int userId, double weight) {
+        int p = productSlot(productId);
+        int u = userSlot(userId);
+        return channels[channel].add(p, u, weight, false);
+    }
+
+    /**
+     * 以 slot 行为中心，沿倒排表累加其与所有共现商品在各通道上的点积
+     * 累加器开启 trackCentered 时，同时累加按用户均值中心化后的交叉项与平方项
+     */
+    public void accumulateRow(int slot, RowAccumulator acc) {
+        acc.reset(this, slot, productCount, CHANNEL_COUNT);
+        boolean centered = acc.tracksCentered();
+        for (int c = 0; c < CHANNEL_COUNT; c++) {
+            Channel ch = channels[c];
+            if (slot >= ch.itemSize.length) {
+                continue;
+            }
+            double[] sums = acc.sums[c];
+            double[][] stats = centered ? acc.centered[c] : null;
+            int[] users = ch.itemUsers[slot];
+            int userSize = ch.itemSize[slot];
+            for (int k = 0; k < userSize; k++) {
+                int u = users[k];
+                int[] items = ch.userItems[u];
+                double[] weights = ch.userWeights[u];
+                int itemSize = ch.userSize[u];
+                // 先找到该用户对当前商品的权重
+                double self = 0.0;
+                for (int m = 0; m < itemSize; m++) {
+                    if (items[m] == slot) {
+                        self = weights[m];
+                        break;
+                    }
+                }
+                if (self == 0.0) {
+                    continue;
+                }
+                double mean = ch.userSum[u] / itemSize;
+                double selfCentered = self - mean;
+                for (int m = 0; m < itemSize; m++) {
+                    int other = items[m];
+                    if (other == slot) {
+                        continue;
+                    }
+                    acc.touch(other);
+                    sums[other] += self * weights[m];
+                    if (stats != null) {
+                        double otherCentered = weights[m] - mean;
+                        stats[RowAccumulator.CROSS][other] += selfCentered * otherCentered;
+                        stats[RowAccumulator.SELF_SQUARE][other] += selfCentered * selfCentered;
+                        stats[RowAccumulator.OTHER_SQUARE][other] += otherCentered * otherCentered;
+                    }
+                }
+            }
+        }
+    }
+
+    /** 商品向量在某通道上的平方范数 Σw² */
+    public double norm(int channel, int slot) {
+        double[] norms = channels[channel].itemNorms;
+        return slot < norms.length ? norms[slot] : 0.0;
+    }
+
+    public int productCount() {
+        return productCount;
+    }
+
+    public int userCount() {
+        return userCount;
+    }
+
+    public int productId(int slot) {
+        return productIds[slot];
+    }
+
+    /** @return 商品槽位，不存在时返回 -1 */
+    public int slotOf(int productId) {
+        Integer slot = productSlots.get(productId);
+        return slot == null ? -1 : slot;
+    }
+
+    private int productSlot(int productId) {
+        Integer slot = productSlots.get(productId);
+        if (slot != null) {
+            return slot;
+        }
+        if (productCount == productIds.length) {
+            productIds = Arrays.copyOf(productIds, productCount * 2);
+        }
+        productIds[productCount] = productId;
+        productSlots.put(productId, productCount);
+        return productCount++;
+    }
+
+    private int userSlot(int userId) {
+        Integer slot = userSlots.get(userId);
+        if (slot != null) {
+            return slot;
+        }
+        userSlots.put(userId, userCount);
+        return userCount++;
+    }
+
+    /**
+     * 单个行为通道的倒排存储，全部使用原始类型数组，按需倍增扩容
+     */
+    private static final class Channel {
+        int[][] userItems = new int[16][];
+        double[][] userWeights = new double[16][];
+        int[] userSize = new int[16];
+        double[] userSum = new double[16];
+
+        int[][] itemUsers = new int[16][];
+        int[] itemSize = new int[16];
+        double[] itemNorms = new double[16];
+
+        double add(int p, int u, double weight, boolean sum) {
+            ensureUser(u);
+            ensureItem(p);
+            int[] items = userItems[u];
+            int size = userSize[u];
+            for (int m = 0; m < size; m++) {
+                if (items[m] == p) {
+                    double old = userWeights[u][m];
+                    double updated = sum ? old + weight : old;
+                    userWeights[u][m] = updated;
+                    userSum[u] += updated - old;
+                    itemNorms[p] += updated * updated - old * old;
+                    return old;
+                }
+            }
+            // 新的 (商品, 用户) 组合，同时追加到两侧
+            if (size == items.length) {
+                userItems[u] = items = Arrays.copyOf(items, size * 2);
+                userWeights[u] = Arrays.copyOf(userWeights[u], size * 2);
+            }
+            items[size] = p;
+            userWeights[u][size] = weight;
+            userSize[u] = size + 1;
+            userSum[u] += weight;
+
+            int[] users = itemUsers[p];
+            int n = itemSize[p];
+            if (n == users.length) {
+                itemUsers[p] = users = Arrays.copyOf(users, n * 2);
+            }
+            users[n] = u;
+            itemSize[p] = n + 1;
+            itemNorms[p] += weight * weight;
+            return 0.0;
+        }
+
+        private void ensureUser(int u) {
+            if (u >= userItems.length) {
+                int capacity = Math.max(u + 1, userItems.length * 2);
+                userItems = Arrays.copyOf(userItems, capacity);
+                userWeights = Arrays.copyOf(userWeights, capacity);
+                userSize = Arrays.copyOf(userSize, capacity);
+                userSum = Arrays.copyOf(userSum, capacity);
+            }
+            if (userItems[u] == null) {
+                userItems[u] = new int[4];
+                userWeights[u] = new double[4];
+            }
+        }
+
+        private void ensureItem(int p) {
+            if (p >= itemUsers.length) {
+                int capacity = Math.max(p + 1, itemUsers.length * 2);
+                itemUsers = Arrays.copyOf(itemUsers, capacity);
+                itemSize = Arrays.copyOf(itemSize, capacity);
+                itemNorms = Arrays.copyOf(itemNorms, capacity);
+            }
+            if (itemUsers[p] == null) {
+                itemUsers[p] = new int[4];
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基于内容相似度的候选生成（MinHash + LSH 分桶 + 同类别）
+ * <p>
+ * 每个商品的"词片"集合 = 名称词ID + 描述词ID（无描述时加一个统一的占位词片），
+ * 计算 bands × rows 个 MinHash 值，每 rows 个合成一个桶键。两个商品只要有一个 band 落入同一个桶，
+ * 或者有一个共同类别，就作为候选交给精确打分；其余商品对直接跳过。
+ * 命中概率约为 1 - (1 - J^rows)^bands（J 为词片 Jaccard），增大 bands 或减小 rows 可提高召回。
+ * </p>
+ * 构建完成后的并发只读是安全的。
+ */
+public class ContentCandidateIndex {
+    private static final int NO_DESCRIPTION = -1;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final int bands;
+    private final int rows;
+    private final long[] hashSeeds;
+    private final List<Map<Long, IntList>> bandBuckets;
+    private final Map<Integer, IntList> categoryRows = new HashMap<>();
+    private long[][] bandKeys = new long[0][];
+    private long[][] categories = new long[0][];
+    private int rowCount;
+
+    public ContentCandidateIndex(int bands, int rows) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("bands 和 rows 必须大于0");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.hashSeeds = new long[bands * rows];
+        Random random = new Random(SEED);
+        for (int i = 0; i < hashSeeds.length; i++) {
+            hashSeeds[i] = random.nextLong();
+        }
+        this.bandBuckets = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            bandBuckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 为特征表中的全部商品建立索引
+     */
+    public static ContentCandidateIndex build(ContentFeatures features, int bands, int rows) {
+        ContentCandidateIndex index = new ContentCandidateIndex(bands, rows);
+        for (int row = 0; row < features.size(); row++) {
+            index.add(row, features.name(row), features.description(row), features.categories(row));
+        }
+        return index;
+    }
+
+    /**
+     * 加入（或追加）一行
+     * 商品修改后可用同一行号重新加入：旧的桶成员不会移除，只会多出一些候选，由精确打分过滤
+     */
+    public void add(int row, TextVector name, TextVector description, long[] categoryBits) {
+        if (row >= bandKeys.length) {
+            int capacity = Math.max(row + 1, bandKeys.length * 2);
+            bandKeys = Arrays.copyOf(bandKeys, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+        }
+        long[] keys = bandKeys(name, description);
+        bandKeys[row] = keys;
+        categories[row] = categoryBits;
+        for (int b = 0; b < bands; b++) {
+            bandBuckets.get(b).computeIfAbsent(keys[b], k -> new IntList()).add(row);
+        }
+        for (int word = 0; word < categoryBits.length; word++) {
+            long bits = categoryBits[word];
+            while (bits != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+                categoryRows.computeIfAbsent(bit, k -> new IntList()).add(row);
+                bits &= bits - 1;
+            }
+        }
+        rowCount = Math.max(rowCount, row + 1);
+    }
+
+    /**
+     * 收集某一行的候选行（不含自身），结果写入 buffer
+     */
+    public void collect(int row, CandidateBuffer buffer) {
+        buffer.reset(rowCount);
+        long[] keys = bandKeys[row];
+        for (int b = 0; b < bands; b++) {
+            IntList bucket = bandBuckets.get(b).get(keys[b]);
+            if (bucket != null) {
+                bucket.addTo(buffer, row);
+            }
+        }
+        long[] categoryBits = categories[row];
+        for (int word = 0; word < categoryBits.length; word++) {
+            long bits = categoryBits[word];
+            while (bits != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+                IntList members = categoryRows.get(bit);
+                if (members != null) {
+                    members.addTo(buffer, row);
+                }
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    private long[] bandKeys(TextVector name, TextVector description) {
+        long[] minHash = new long[hashSeeds.length];
+        Arrays.fill(minHash, Long.MAX_VALUE);
+        for (int k = 0; k < name.size(); k++) {
+            update(minHash, name.termAt(k) * 2L);
+        }
+        if (description.isEmpty()) {
+            update(minHash, NO_DESCRIPTION);
+        } else {
+            for (int k = 0; k < description.size(); k++) {
+                update(minHash, description.termAt(k) * 2L + 1);
+            }
+        }
+        long[] keys = new long[bands];
+        for (int b = 0; b < bands; b++) {
+            long key = b;
+            for (int r = 0; r < rows; r++) {
+                key = mix(key * 31 + minHash[b * rows + r]);
+            }
+            keys[b] = key;
+        }
+        return keys;
+    }
+
+    private void update(long[] minHash, long shingle) {
+        for (int i = 0; i < hashSeeds.length; i++) {
+            long h = mix(shingle ^ hashSeeds[i]);
+            if (h < minHash[i]) {
+                minHash[i] = h;
+            }
+        }
+    }
+
+    /** 64位混合函数（MurmurHash3 finalizer） */
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    /**
+     * 原始 int 的可增长列表（桶成员）
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addTo(CandidateBuffer buffer, int self) {
+            for (int k = 0; k < size; k++) {
+                if (values[k] != self) {
+                    buffer.add(values[k]);
+                }
+            }
+        }
+    }
+}
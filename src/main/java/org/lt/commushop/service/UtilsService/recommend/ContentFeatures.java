@@ -0,0 +1,108 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.Arrays;
+
+/**
+ * 基于内容推荐的商品特征表（按行存放，每行一个商品）
+ * 每次构建时一次性算好：名称/描述的 TF-IDF 向量、类别位图、价格，
+ * 两两相似度计算时只读这些数组，不再重复分词或查库
+ * <p>
+ * 商品新增时在末尾追加一行，删除时只把该行标记为失效（行号保持不变）。
+ * 非线程安全：写入需由调用方串行化。
+ * </p>
+ */
+public class ContentFeatures {
+    private int[] productIds;
+    private TextVector[] names;
+    private TextVector[] descriptions;
+    private long[][] categories;
+    private double[] prices;
+    private double[] logPrices;
+    private boolean[] live;
+    private int size;
+
+    public ContentFeatures(int capacity) {
+        productIds = new int[capacity];
+        names = new TextVector[capacity];
+        descriptions = new TextVector[capacity];
+        categories = new long[capacity][];
+        prices = new double[capacity];
+        logPrices = new double[capacity];
+        live = new boolean[capacity];
+    }
+
+    public void set(int row, int productId, TextVector name, TextVector description, long[] category, double price) {
+        if (row >= productIds.length) {
+            grow(row + 1);
+        }
+        productIds[row] = productId;
+        names[row] = name;
+        descriptions[row] = description;
+        categories[row] = category;
+        prices[row] = price;
+        logPrices[row] = Math.log1p(Math.max(0.0, price));
+        live[row] = true;
+        size = Math.max(size, row + 1);
+    }
+
+    /**
+     * 在末尾追加一行
+     * @return 新行号
+     */
+    public int append(int productId, TextVector name, TextVector description, long[] category, double price) {
+        int row = size;
+        set(row, productId, name, description, category, price);
+        return row;
+    }
+
+    /**
+     * 把某行标记为失效（商品已删除），之后的打分会跳过该行
+     */
+    public void remove(int row) {
+        live[row] = false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isLive(int row) {
+        return live[row];
+    }
+
+    public int productId(int row) {
+        return productIds[row];
+    }
+
+    public TextVector name(int row) {
+        return names[row];
+    }
+
+    public TextVector description(int row) {
+        return descriptions[row];
+    }
+
+    public long[] categories(int row) {
+        return categories[row];
+    }
+
+    public double price(int row) {
+        return prices[row];
+    }
+
+    /** ln(1 + 价格) */
+    public double logPrice(int row) {
+        return logPrices[row];
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, productIds.length * 2);
+        productIds = Arrays.copyOf(productIds, capacity);
+        names = Arrays.copyOf(names, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        logPrices = Arrays.copyOf(logPrices, capacity);
+        live = Arrays.copyOf(live, capacity);
+    }
+}
@@ -0,0 +1,24 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 余弦相似度（协同过滤，单个行为通道）：dot / sqrt(‖a‖² · ‖b‖²)
+ */
+public class CosineKernel implements SimilarityKernel<RowAccumulator> {
+    private final int channel;
+
+    public CosineKernel(int channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void score(RowAccumulator acc, int row, int[] candidates, int count, double[] out) {
+        CoOccurrenceIndex index = acc.index();
+        double[] dots = acc.sums[channel];
+        double selfNorm = index.norm(channel, row);
+        for (int k = 0; k < count; k++) {
+            int other = candidates[k];
+            double dot = dots[other];
+            out[k] = dot == 0.0 ? 0.0 : dot / Math.sqrt(selfNorm * index.norm(channel, other));
+        }
+    }
+}
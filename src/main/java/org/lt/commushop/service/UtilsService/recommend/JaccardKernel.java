@@ -0,0 +1,26 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * Jaccard 相似度（协同过滤，单个行为通道）：|A∩B| / |A∪B|
+ * 按 Tanimoto 形式 dot / (‖a‖² + ‖b‖² - dot) 计算，二元行为（如收藏）时与集合 Jaccard 完全一致
+ */
+public class JaccardKernel implements SimilarityKernel<RowAccumulator> {
+    private final int channel;
+
+    public JaccardKernel(int channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void score(RowAccumulator acc, int row, int[] candidates, int count, double[] out) {
+        CoOccurrenceIndex index = acc.index();
+        double[] dots = acc.sums[channel];
+        double selfNorm = index.norm(channel, row);
+        for (int k = 0; k < count; k++) {
+            int other = candidates[k];
+            double intersection = dots[other];
+            out[k] = intersection == 0.0 ? 0.0
+                    : intersection / (selfNorm + index.norm(channel, other) - intersection);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 对数价格距离（基于内容）：1 - |ln(1 + p1) - ln(1 + p2)| / ln(maxRatio)，最小为 0
+ * 按价格比例而不是差值衡量，价格相差 maxRatio 倍及以上时相似度为 0；ln(1 + p) 在特征表中预先算好
+ */
+public class LogPriceKernel implements SimilarityKernel<ContentFeatures> {
+    private final double inverseScale;
+
+    public LogPriceKernel(double maxRatio) {
+        if (maxRatio <= 1.0) {
+            throw new IllegalArgumentException("maxRatio 必须大于1");
+        }
+        this.inverseScale = 1.0 / Math.log(maxRatio);
+    }
+
+    @Override
+    public void score(ContentFeatures features, int row, int[] candidates, int count, double[] out) {
+        double logPrice = features.logPrice(row);
+        for (int k = 0; k < count; k++) {
+            out[k] = Math.max(0, 1 - Math.abs(logPrice - features.logPrice(candidates[k])) * inverseScale);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.io.Serializable;
+
+/**
+ * 单个商品的近邻列表：只保留最相似的 N 个商品
+ * 以两个平行数组保存，按相似度从高到低排列
+ */
+public class NeighborList implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final NeighborList EMPTY = new NeighborList(new int[0], new float[0]);
+
+    private final int[] ids;
+    private final float[] scores;
+
+    public NeighborList(int[] ids, float[] scores) {
+        if (ids.length != scores.length) {
+            throw new IllegalArgumentException("ids 与 scores 长度不一致");
+        }
+        this.ids = ids;
+        this.scores = scores;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int idAt(int k) {
+        return ids[k];
+    }
+
+    public float scoreAt(int k) {
+        return scores[k];
+    }
+
+    /**
+     * 返回写入 (id, score) 后的新列表：已存在则更新分数，按分数重新排序并截断到 capacity
+     * 原列表不变，读者可继续安全使用
+     */
+    public NeighborList upsert(int id, float score, int capacity) {
+        TopKCollector collector = new TopKCollector(capacity);
+        for (int k = 0; k < ids.length; k++) {
+            if (ids[k] != id) {
+                collector.offer(ids[k], scores[k]);
+            }
+        }
+        if (score > 0) {
+            collector.offer(id, score);
+        }
+        return collector.toNeighborList();
+    }
+
+    /**
+     * 返回去掉 id 后的新列表，不包含该 id 时返回自身
+     */
+    public NeighborList without(int id) {
+        for (int k = 0; k < ids.length; k++) {
+            if (ids[k] == id) {
+                int[] newIds = new int[ids.length - 1];
+                float[] newScores = new float[ids.length - 1];
+                System.arraycopy(ids, 0, newIds, 0, k);
+                System.arraycopy(scores, 0, newScores, 0, k);
+                System.arraycopy(ids, k + 1, newIds, k, ids.length - k - 1);
+                System.arraycopy(scores, k + 1, newScores, k, ids.length - k - 1);
+                return new NeighborList(newIds, newScores);
+            }
+        }
+        return this;
+    }
+}
@@ -0,0 +1,111 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * 相似度矩阵按行并行构建工具
+ * <p>
+ * 将行号区间二分为若干子任务交给指定的 ForkJoinPool 执行，
+ * 每行结果写入数组中各自的位置，无需全局锁；
+ * 每个工作线程复用一份 scratch（如 {@link RowAccumulator}），避免按任务重复分配。
+ * 由于每行的计算过程与串行时完全一致，并行与串行的结果相同。
+ * 传入 {@link BuildProgress} 时逐行上报进度，并在每行开始前响应取消。
+ * </p>
+ */
+public final class ParallelRowBuilder {
+
+    private ParallelRowBuilder() {
+    }
+
+    /**
+     * 单行计算函数
+     * @param <S> 线程内复用的临时空间
+     * @param <R> 行结果
+     */
+    @FunctionalInterface
+    public interface RowFunction<S, R> {
+        R compute(int row, S scratch);
+    }
+
+    /**
+     * 构建 [0, rowCount) 所有行
+     * @param pool 为 null 时在调用线程上串行计算
+     * @return 按行号排列的结果
+     */
+    public static <S, R> List<R> build(ForkJoinPool pool, int rowCount, int grainSize,
+                                       Supplier<S> scratchFactory, RowFunction<S, R> function) {
+        return build(pool, rowCount, grainSize, scratchFactory, function, null);
+    }
+
+    /**
+     * 构建 [0, rowCount) 所有行，并通过 progress 上报进度、响应取消
+     * @param progress 为 null 时不上报
+     * @throws java.util.concurrent.CancellationException 构建过程中被取消
+     */
+    @SuppressWarnings("unchecked")
+    public static <S, R> List<R> build(ForkJoinPool pool, int rowCount, int grainSize,
+                                       Supplier<S> scratchFactory, RowFunction<S, R> function,
+                                       BuildProgress progress) {
+        Object[] rows = new Object[rowCount];
+        if (progress != null) {
+            progress.start(rowCount);
+        }
+        if (pool == null || rowCount <= grainSize) {
+            S scratch = scratchFactory.get();
+            computeRange(0, rowCount, scratch, function, rows, progress);
+        } else {
+            ThreadLocal<S> scratches = ThreadLocal.withInitial(scratchFactory);
+            pool.invoke(new RangeTask<>(0, rowCount, Math.max(1, grainSize), scratches, function, rows, progress));
+        }
+        return (List<R>) Arrays.asList(rows);
+    }
+
+    private static <S, R> void computeRange(int from, int to, S scratch, RowFunction<S, R> function,
+                                            Object[] rows, BuildProgress progress) {
+        for (int row = from; row < to; row++) {
+            if (progress != null) {
+                progress.checkCancelled();
+            }
+            rows[row] = function.compute(row, scratch);
+            if (progress != null) {
+                progress.rowDone();
+            }
+        }
+    }
+
+    private static final class RangeTask<S, R> extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grainSize;
+        private final ThreadLocal<S> scratches;
+        private final RowFunction<S, R> function;
+        private final Object[] rows;
+        private final BuildProgress progress;
+
+        RangeTask(int from, int to, int grainSize, ThreadLocal<S> scratches,
+                  RowFunction<S, R> function, Object[] rows, BuildProgress progress) {
+            this.from = from;
+            this.to = to;
+            this.grainSize = grainSize;
+            this.scratches = scratches;
+            this.function = function;
+            this.rows = rows;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grainSize) {
+                computeRange(from, to, scratches.get(), function, rows, progress);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask<>(from, mid, grainSize, scratches, function, rows, progress),
+                    new RangeTask<>(mid, to, grainSize, scratches, function, rows, progress));
+        }
+    }
+}
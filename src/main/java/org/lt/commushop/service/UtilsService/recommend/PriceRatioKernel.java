@@ -0,0 +1,16 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 价格相似度（基于内容）：1 - |p1 - p2| / 平均价格，最小为 0
+ */
+public class PriceRatioKernel implements SimilarityKernel<ContentFeatures> {
+    @Override
+    public void score(ContentFeatures features, int row, int[] candidates, int count, double[] out) {
+        double price = features.price(row);
+        for (int k = 0; k < count; k++) {
+            double otherPrice = features.price(candidates[k]);
+            double avgPrice = (price + otherPrice) / 2.0;
+            out[k] = Math.max(0, 1 - Math.abs(price - otherPrice) / avgPrice);
+        }
+    }
+}
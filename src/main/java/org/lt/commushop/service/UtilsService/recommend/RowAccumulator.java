@@ -0,0 +1,112 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.Arrays;
+
+/**
+ * 单行共现累加器（稀疏累加 + 触达列表）
+ * <p>
+ * 每个线程复用一个实例：只清理上一行触达过的位置，避免每行重新分配 O(P) 的数组。
+ * 开启 trackCentered 后额外累加按用户均值中心化的三项统计量（供 {@link AdjustedCosineKernel} 使用）。
+ * 同时作为协同过滤 {@link SimilarityKernel} 的打分上下文：记录本行来自哪个索引，并提供复用的分数缓冲区。
+ * </p>
+ */
+public class RowAccumulator {
+    static final int CROSS = 0;
+    static final int SELF_SQUARE = 1;
+    static final int OTHER_SQUARE = 2;
+
+    double[][] sums = new double[0][];
+    // [通道][CROSS/SELF_SQUARE/OTHER_SQUARE][槽位]
+    double[][][] centered = new double[0][][];
+    private final boolean trackCentered;
+    private CoOccurrenceIndex index;
+    private int row;
+    private int[] touched = new int[0];
+    private boolean[] seen = new boolean[0];
+    private int touchedCount;
+    private double[] scores = new double[0];
+
+    public RowAccumulator() {
+        this(false);
+    }
+
+    public RowAccumulator(boolean trackCentered) {
+        this.trackCentered = trackCentered;
+    }
+
+    void reset(CoOccurrenceIndex index, int row, int productCount, int channelCount) {
+        this.index = index;
+        this.row = row;
+        if (sums.length != channelCount || seen.length < productCount) {
+            int capacity = Math.max(productCount, seen.length);
+            sums = new double[channelCount][capacity];
+            centered = trackCentered ? new double[channelCount][3][capacity] : new double[0][][];
+            touched = new int[capacity];
+            seen = new boolean[capacity];
+            touchedCount = 0;
+            return;
+        }
+        for (int k = 0; k < touchedCount; k++) {
+            int slot = touched[k];
+            seen[slot] = false;
+            for (double[] channel : sums) {
+                channel[slot] = 0.0;
+            }
+            for (double[][] stats : centered) {
+                for (double[] stat : stats) {
+                    stat[slot] = 0.0;
+                }
+            }
+        }
+        touchedCount = 0;
+    }
+
+    void touch(int slot) {
+        if (!seen[slot]) {
+            seen[slot] = true;
+            touched[touchedCount++] = slot;
+        }
+    }
+
+    boolean tracksCentered() {
+        return trackCentered;
+    }
+
+    /** 本行所在的索引 */
+    public CoOccurrenceIndex index() {
+        return index;
+    }
+
+    /** 本行的商品槽位 */
+    public int row() {
+        return row;
+    }
+
+    /** 当前行触达的商品数量 */
+    public int size() {
+        return touchedCount;
+    }
+
+    /** 第 k 个触达的商品槽位（按遍历顺序） */
+    public int slotAt(int k) {
+        return touched[k];
+    }
+
+    /** 触达的商品槽位数组，有效范围 [0, size())，不要修改 */
+    public int[] slots() {
+        return touched;
+    }
+
+    /** 当前行与 slot 在某通道上的点积 */
+    public double sum(int channel, int slot) {
+        return sums[channel][slot];
+    }
+
+    /** 复用的分数缓冲区，长度至少为 size() */
+    public double[] scores() {
+        if (scores.length < touchedCount) {
+            scores = new double[Math.max(touchedCount, scores.length * 2)];
+        }
+        return scores;
+    }
+}
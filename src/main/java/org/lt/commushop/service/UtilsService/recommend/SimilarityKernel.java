@@ -0,0 +1,18 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 相似度核函数：一次对一行的一批候选打分
+ * <p>
+ * 实现类在自己的循环里只读原始类型数组、把分数写入 out，不装箱、不分配对象；
+ * 每个实现的热循环只有一种接收者类型，JIT 可以内联展开。
+ * 协同过滤的上下文是 {@link RowAccumulator}（已累加好本行的共现统计），
+ * 基于内容推荐的上下文是 {@link ContentFeatures}。
+ * </p>
+ * @param <C> 打分上下文
+ */
+public interface SimilarityKernel<C> {
+    /**
+     * 计算 row 与 candidates[0, count) 中每一项的相似度，写入 out[0, count)
+     */
+    void score(C context, int row, int[] candidates, int count, double[] out);
+}
@@ -0,0 +1,54 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 相似度模型诊断导出
+ * 按等间隔抽样若干行，以 gzip 压缩的文本写入文件，每行格式：
+ * 商品ID \t 近邻ID:相似度,近邻ID:相似度,...
+ * 只在诊断时按需调用，构建与推荐流程不会生成这些字符串
+ */
+public final class SimilarityMatrixDumper {
+
+    private SimilarityMatrixDumper() {
+    }
+
+    /**
+     * @param sampleSize 抽样行数，小于等于0时导出全部行
+     * @return 实际写出的行数
+     */
+    public static int dump(SimilarityModel model, int sampleSize, Path file) throws IOException {
+        int rows = model.size();
+        int step = sampleSize <= 0 || sampleSize >= rows ? 1 : rows / sampleSize;
+        int written = 0;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8))) {
+            writer.write("# products=" + rows + " entries=" + model.entryCount() + " sampled_every=" + step);
+            writer.newLine();
+            for (int i = 0; i < rows && (sampleSize <= 0 || written < sampleSize); i += step) {
+                NeighborList list = model.neighborsAt(i);
+                writer.write(Integer.toString(model.productIdAt(i)));
+                writer.write('\t');
+                for (int k = 0; k < list.size(); k++) {
+                    if (k > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(Integer.toString(list.idAt(k)));
+                    writer.write(':');
+                    writer.write(String.format(Locale.ROOT, "%.6f", list.scoreAt(k)));
+                }
+                writer.newLine();
+                written++;
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,187 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 商品相似度模型：每个商品一份 Top-N 近邻列表
+ * 商品ID升序存放，按ID二分查找，内存占用 O(P·N) 而不是 O(P²)
+ */
+public class SimilarityModel implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] productIds;
+    private final NeighborList[] neighbors;
+
+    /**
+     * @param productIds 商品ID（必须升序）
+     * @param neighbors  与 productIds 一一对应的近邻列表
+     */
+    public SimilarityModel(int[] productIds, NeighborList[] neighbors) {
+        if (productIds.length != neighbors.length) {
+            throw new IllegalArgumentException("productIds 与 neighbors 长度不一致");
+        }
+        this.productIds = productIds;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * 由无序的 (商品ID, 近邻列表) 构建模型
+     */
+    public static SimilarityModel of(int[] unsortedIds, NeighborList[] lists) {
+        int n = unsortedIds.length;
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = ((long) unsortedIds[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] ids = new int[n];
+        NeighborList[] sorted = new NeighborList[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = (int) (order[i] >> 32);
+            NeighborList list = lists[(int) order[i]];
+            sorted[i] = list == null ? NeighborList.EMPTY : list;
+        }
+        return new SimilarityModel(ids, sorted);
+    }
+
+    /**
+     * @return 该商品的近邻列表，模型中没有该商品时返回 null
+     */
+    public NeighborList neighbors(int productId) {
+        int pos = Arrays.binarySearch(productIds, productId);
+        return pos < 0 ? null : neighbors[pos];
+    }
+
+    public boolean contains(int productId) {
+        return Arrays.binarySearch(productIds, productId) >= 0;
+    }
+
+    public int size() {
+        return productIds.length;
+    }
+
+    public int productIdAt(int k) {
+        return productIds[k];
+    }
+
+    public NeighborList neighborsAt(int k) {
+        return neighbors[k];
+    }
+
+    /** 所有近邻条目总数 */
+    public long entryCount() {
+        long count = 0;
+        for (NeighborList list : neighbors) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    /**
+     * 返回替换了部分行后的新模型（写时复制），不存在的商品会按ID顺序插入
+     * 值为 null 表示删除该行（只删除这一行，其他行里对它的引用由调用方一并放进 updates）
+     * 当前模型保持不变，正在读取它的请求不受影响
+     */
+    public SimilarityModel patch(Map<Integer, NeighborList> updates) {
+        int[] added = updates.entrySet().stream()
+                .filter(e -> e.getValue() != null && !contains(e.getKey()))
+                .mapToInt(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+        int removed = 0;
+        for (Map.Entry<Integer, NeighborList> entry : updates.entrySet()) {
+            if (entry.getValue() == null && contains(entry.getKey())) {
+                removed++;
+            }
+        }
+        int n = productIds.length + added.length - removed;
+        int[] ids = new int[n];
+        NeighborList[] lists = new NeighborList[n];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (k < n) {
+            if (j >= added.length || (i < productIds.length && productIds[i] < added[j])) {
+                int id = productIds[i];
+                NeighborList list = neighbors[i++];
+                if (updates.containsKey(id)) {
+                    list = updates.get(id);
+                    if (list == null) {
+                        continue;
+                    }
+                }
+                ids[k] = id;
+                lists[k++] = list;
+            } else {
+                ids[k] = added[j];
+                lists[k++] = updates.get(added[j++]);
+            }
+        }
+        return new SimilarityModel(ids, lists);
+    }
+
+    /**
+     * 与基础模型相比发生变化的行（按引用比较，写时复制未改动的行与基础模型共享同一对象）
+     * base.patch(diff(base)) 与当前模型内容相同，用于只发布增量补丁中改动过的行
+     * @return 商品ID -> 新的近邻列表，被删除的行值为 null
+     */
+    public Map<Integer, NeighborList> diff(SimilarityModel base) {
+        Map<Integer, NeighborList> changed = new HashMap<>();
+        int i = 0;
+        int j = 0;
+        while (i < productIds.length || j < base.productIds.length) {
+            if (j >= base.productIds.length || (i < productIds.length && productIds[i] < base.productIds[j])) {
+                changed.put(productIds[i], neighbors[i]);
+                i++;
+            } else if (i >= productIds.length || base.productIds[j] < productIds[i]) {
+                changed.put(base.productIds[j], null);
+                j++;
+            } else {
+                if (neighbors[i] != base.neighbors[j]) {
+                    changed.put(productIds[i], neighbors[i]);
+                }
+                i++;
+                j++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 返回删除某个商品后的新模型（写时复制）：去掉它自己的行，并把它从所有近邻列表中移除
+     */
+    public SimilarityModel remove(int productId) {
+        int pos = Arrays.binarySearch(productIds, productId);
+        int n = pos < 0 ? productIds.length : productIds.length - 1;
+        int[] ids = new int[n];
+        NeighborList[] lists = new NeighborList[n];
+        int k = 0;
+        for (int i = 0; i < productIds.length; i++) {
+            if (i == pos) {
+                continue;
+            }
+            ids[k] = productIds[i];
+            lists[k++] = neighbors[i].without(productId);
+        }
+        return new SimilarityModel(ids, lists);
+    }
+
+    /**
+     * 转换为嵌套 Map 形式，仅供调试接口展示
+     */
+    public Map<Integer, Map<Integer, Double>> toMatrix() {
+        Map<Integer, Map<Integer, Double>> matrix = new HashMap<>();
+        for (int i = 0; i < productIds.length; i++) {
+            NeighborList list = neighbors[i];
+            Map<Integer, Double> row = new HashMap<>();
+            for (int k = 0; k < list.size(); k++) {
+                row.put(list.idAt(k), (double) list.scoreAt(k));
+            }
+            matrix.put(productIds[i], row);
+        }
+        return matrix;
+    }
+}
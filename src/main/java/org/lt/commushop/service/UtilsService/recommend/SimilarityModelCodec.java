@@ -0,0 +1,235 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 相似度模型的紧凑二进制编码
+ * <pre>
+ * 头部(10字节)：魔数 "SIMM" | 格式版本(1) | 标志位(1，bit0=deflate压缩) | 负载原始长度(4)
+ * 负载：商品数(varint)
+ *      每行：商品ID与上一行的差值(varint) | 近邻数(varint)
+ *            近邻ID与前一个近邻的差值(zigzag varint)... | 相似度(float32 小端)...
+ * </pre>
+ * 商品ID升序存储，差值通常只占1~2字节；相似度以 float 保存，比 JDK 序列化的嵌套 HashMap 小一个数量级以上
+ * <p>
+ * 增量补丁按行单独存储，单行编码（{@link #encodeRow}）没有头部，只有上面"每行"中的近邻部分：
+ * 近邻数(varint) | 近邻ID差值(zigzag varint)... | 相似度(float32 小端)...；零长度表示该行已删除
+ * </p>
+ */
+public final class SimilarityModelCodec {
+    private static final byte[] MAGIC = {'S', 'I', 'M', 'M'};
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte FLAG_DEFLATE = 1;
+    private static final int HEADER_SIZE = 10;
+
+    private SimilarityModelCodec() {
+    }
+
+    public static byte[] encode(SimilarityModel model, boolean compress) {
+        int rows = model.size();
+        long entries = model.entryCount();
+        // 预估容量：每行最多 10 字节头，每个近邻最多 5 字节ID + 4 字节分数
+        ByteBuffer payload = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 16, 5L + rows * 10L + entries * 9L))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        writeVarInt(payload, rows);
+        int previousId = 0;
+        for (int i = 0; i < rows; i++) {
+            int productId = model.productIdAt(i);
+            NeighborList list = model.neighborsAt(i);
+            writeVarInt(payload, productId - previousId);
+            previousId = productId;
+            writeNeighbors(payload, list);
+        }
+        int rawLength = payload.position();
+        byte[] body = Arrays.copyOf(payload.array(), rawLength);
+        if (compress) {
+            body = deflate(body);
+        }
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + body.length).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(MAGIC).put(FORMAT_VERSION).put(compress ? FLAG_DEFLATE : 0).putInt(rawLength).put(body);
+        return out.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException 数据不是本编码格式或版本不支持
+     */
+    public static SimilarityModel decode(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_SIZE) {
+            throw new IllegalArgumentException("相似度模型数据长度不足");
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (byte b : MAGIC) {
+            if (header.get() != b) {
+                throw new IllegalArgumentException("相似度模型数据魔数不匹配");
+            }
+        }
+        byte version = header.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的相似度模型格式版本：" + version);
+        }
+        byte flags = header.get();
+        int rawLength = header.getInt();
+        byte[] body = Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length);
+        if ((flags & FLAG_DEFLATE) != 0) {
+            body = inflate(body, rawLength);
+        }
+        ByteBuffer payload = ByteBuffer.wrap(body, 0, rawLength).order(ByteOrder.LITTLE_ENDIAN);
+        int rows = readVarInt(payload);
+        int[] productIds = new int[rows];
+        NeighborList[] lists = new NeighborList[rows];
+        int previousId = 0;
+        for (int i = 0; i < rows; i++) {
+            previousId += readVarInt(payload);
+            productIds[i] = previousId;
+            lists[i] = readNeighbors(payload);
+        }
+        return new SimilarityModel(productIds, lists);
+    }
+
+    /**
+     * 编码单行近邻列表（增量补丁用），null 表示删除该行，编码为零长度
+     */
+    public static byte[] encodeRow(NeighborList list) {
+        if (list == null) {
+            return new byte[0];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(5 + list.size() * 9).order(ByteOrder.LITTLE_ENDIAN);
+        writeNeighbors(buffer, list);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * 解码 {@link #encodeRow} 的结果，零长度返回 null（该行已删除）
+     * @throws IllegalArgumentException 数据截断
+     */
+    public static NeighborList decodeRow(byte[] bytes) {
+        if (bytes.length == 0) {
+            return null;
+        }
+        try {
+            return readNeighbors(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("相似度模型补丁行数据不完整", e);
+        }
+    }
+
+    /** 是否为本编码格式的数据（用于兼容旧的序列化数据） */
+    public static boolean isEncoded(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, offset, rawLength - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != rawLength) {
+                throw new IllegalArgumentException("相似度模型数据解压长度不一致");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("相似度模型数据解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeNeighbors(ByteBuffer buffer, NeighborList list) {
+        int size = list.size();
+        writeVarInt(buffer, size);
+        int previousNeighbor = 0;
+        for (int k = 0; k < size; k++) {
+            int id = list.idAt(k);
+            writeVarInt(buffer, zigZag(id - previousNeighbor));
+            previousNeighbor = id;
+        }
+        for (int k = 0; k < size; k++) {
+            buffer.putFloat(list.scoreAt(k));
+        }
+    }
+
+    private static NeighborList readNeighbors(ByteBuffer buffer) {
+        int size = readVarInt(buffer);
+        if (size == 0) {
+            return NeighborList.EMPTY;
+        }
+        int[] ids = new int[size];
+        float[] scores = new float[size];
+        int previousNeighbor = 0;
+        for (int k = 0; k < size; k++) {
+            previousNeighbor += unZigZag(readVarInt(buffer));
+            ids[k] = previousNeighbor;
+        }
+        for (int k = 0; k < size; k++) {
+            scores[k] = buffer.getFloat();
+        }
+        return new NeighborList(ids, scores);
+    }
+
+    private static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
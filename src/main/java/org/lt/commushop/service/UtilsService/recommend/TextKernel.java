@@ -0,0 +1,32 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 文本相似度（基于内容）：名称、描述向量各自求余弦后加权
+ * 向量的权重方案（TF-IDF 或 BM25）由 {@link TfIdfVectorizer} 决定；两个商品都没有描述时描述相似度记为 1
+ */
+public class TextKernel implements SimilarityKernel<ContentFeatures> {
+    private final double nameWeight;
+    private final double descriptionWeight;
+
+    public TextKernel(double nameWeight, double descriptionWeight) {
+        this.nameWeight = nameWeight;
+        this.descriptionWeight = descriptionWeight;
+    }
+
+    @Override
+    public void score(ContentFeatures features, int row, int[] candidates, int count, double[] out) {
+        TextVector name = features.name(row);
+        TextVector description = features.description(row);
+        for (int k = 0; k < count; k++) {
+            int other = candidates[k];
+            TextVector otherDescription = features.description(other);
+            double descSimilarity;
+            if (description.isEmpty() || otherDescription.isEmpty()) {
+                descSimilarity = description.isEmpty() && otherDescription.isEmpty() ? 1.0 : 0.0;
+            } else {
+                descSimilarity = description.cosine(otherDescription);
+            }
+            out[k] = nameWeight * name.cosine(features.name(other)) + descriptionWeight * descSimilarity;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 稀疏文本特征向量：词ID升序 + 对应的 TF-IDF 权重（已做 L2 归一化）
+ * 不可变，可在线程间共享
+ */
+public final class TextVector {
+    public static final TextVector EMPTY = new TextVector(new int[0], new float[0]);
+
+    private final int[] terms;
+    private final float[] weights;
+
+    TextVector(int[] terms, float[] weights) {
+        this.terms = terms;
+        this.weights = weights;
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    public boolean isEmpty() {
+        return terms.length == 0;
+    }
+
+    public int termAt(int k) {
+        return terms[k];
+    }
+
+    public float weightAt(int k) {
+        return weights[k];
+    }
+
+    /**
+     * 余弦相似度：两个向量均已归一化，按词ID归并求点积即可，不分配任何对象
+     */
+    public double cosine(TextVector other) {
+        int[] a = terms;
+        int[] b = other.terms;
+        int i = 0;
+        int j = 0;
+        double dot = 0.0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                dot += (double) weights[i++] * other.weights[j++];
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Math.min(1.0, dot);
+    }
+}
@@ -0,0 +1,147 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * TF-IDF 文本向量化
+ * <p>
+ * 先用整批文档拟合词表和文档频率（fit），之后每篇文档只分词一次得到一个稀疏向量。
+ * TF 取 1 + ln(词频)，IDF 取平滑形式 ln((N + 1) / (df + 1)) + 1，结果做 L2 归一化。
+ * 分词器由调用方注入（线上使用 HanLP），因此本类不依赖具体分词实现。
+ * 也可选用 BM25 权重：TF 按文档长度饱和（k1 = 1.2，b = 0.75），IDF 取 ln(1 + (N - df + 0.5) / (df + 0.5))，
+ * 对商品名称这类短文本中重复堆砌的关键词更不敏感。
+ * </p>
+ * 拟合完成后 transform 是线程安全的；拟合时未出现的词按 df = 0 计算并分配新的词ID。
+ */
+public class TfIdfVectorizer {
+    /** 词权重方案 */
+    public enum Weighting {
+        TFIDF, BM25
+    }
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    private final Function<String, List<String>> tokenizer;
+    private final Weighting weighting;
+    private final Map<String, Integer> vocabulary = new HashMap<>();
+    private int[] documentFrequency = new int[0];
+    private int documentCount;
+    private double averageLength;
+
+    public TfIdfVectorizer(Function<String, List<String>> tokenizer) {
+        this(tokenizer, Weighting.TFIDF);
+    }
+
+    public TfIdfVectorizer(Function<String, List<String>> tokenizer, Weighting weighting) {
+        this.tokenizer = tokenizer;
+        this.weighting = weighting;
+    }
+
+    /**
+     * 拟合词表与文档频率，并返回每篇文档的向量（与输入顺序一致）
+     */
+    public synchronized TextVector[] fitTransform(List<String> documents) {
+        vocabulary.clear();
+        documentCount = documents.size();
+        int[] df = new int[16];
+        long totalLength = 0;
+        List<List<String>> tokenized = new ArrayList<>(documents.size());
+        for (String document : documents) {
+            List<String> tokens = tokenize(document);
+            tokenized.add(tokens);
+            totalLength += tokens.size();
+            for (int id : distinctTermIds(tokens)) {
+                if (id >= df.length) {
+                    df = Arrays.copyOf(df, Math.max(id + 1, df.length * 2));
+                }
+                df[id]++;
+            }
+        }
+        documentFrequency = df;
+        averageLength = documentCount == 0 ? 0.0 : (double) totalLength / documentCount;
+        TextVector[] vectors = new TextVector[documents.size()];
+        for (int d = 0; d < documents.size(); d++) {
+            vectors[d] = weigh(tokenized.get(d));
+        }
+        return vectors;
+    }
+
+    /**
+     * 用已拟合的词表把单篇文档转换为向量（如新增或修改的商品）
+     */
+    public synchronized TextVector transform(String document) {
+        return weigh(tokenize(document));
+    }
+
+    private List<String> tokenize(String document) {
+        return document == null || document.isEmpty() ? Collections.emptyList() : tokenizer.apply(document);
+    }
+
+    private TextVector weigh(List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return TextVector.EMPTY;
+        }
+        // 统计词频
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (String token : tokens) {
+            counts.merge(termId(token), 1, Integer::sum);
+        }
+        int[] terms = new int[counts.size()];
+        int n = 0;
+        for (Integer id : counts.keySet()) {
+            terms[n++] = id;
+        }
+        Arrays.sort(terms);
+        float[] weights = new float[terms.length];
+        double norm = 0.0;
+        // BM25 的长度归一化因子对整篇文档相同，只算一次
+        double lengthNorm = averageLength > 0 ? BM25_K1 * (1 - BM25_B + BM25_B * tokens.size() / averageLength) : BM25_K1;
+        for (int k = 0; k < terms.length; k++) {
+            int id = terms[k];
+            int df = id < documentFrequency.length ? documentFrequency[id] : 0;
+            int count = counts.get(id);
+            double weight;
+            if (weighting == Weighting.BM25) {
+                double tf = count * (BM25_K1 + 1) / (count + lengthNorm);
+                double idf = Math.log(1.0 + (documentCount - df + 0.5) / (df + 0.5));
+                weight = tf * idf;
+            } else {
+                double tf = 1.0 + Math.log(count);
+                double idf = Math.log((documentCount + 1.0) / (df + 1.0)) + 1.0;
+                weight = tf * idf;
+            }
+            weights[k] = (float) weight;
+            norm += weight * weight;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] *= scale;
+        }
+        return new TextVector(terms, weights);
+    }
+
+    private int[] distinctTermIds(List<String> tokens) {
+        return tokens.stream().mapToInt(this::termId).distinct().toArray();
+    }
+
+    private int termId(String token) {
+        Integer id = vocabulary.get(token);
+        if (id == null) {
+            id = vocabulary.size();
+            vocabulary.put(token, id);
+        }
+        return id;
+    }
+
+    /** 词表大小 */
+    public synchronized int vocabularySize() {
+        return vocabulary.size();
+    }
+}
@@ -0,0 +1,32 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 按半衰期的指数时间衰减：factor = 2^(-天数 / halfLifeDays)
+ * <p>
+ * 以构造时的日期为"今天"，按天粒度计算，同一次构建内对所有行为使用同一基准；
+ * 时间缺失、晚于今天的行为不衰减。halfLifeDays 小于等于0时关闭衰减（恒为1）。
+ * </p>
+ */
+public class TimeDecay {
+    private final long today;
+    private final double lambda;
+
+    public TimeDecay(double halfLifeDays, LocalDate today) {
+        this.today = today.toEpochDay();
+        this.lambda = halfLifeDays > 0 ? Math.log(2) / halfLifeDays : 0.0;
+    }
+
+    /**
+     * 某个时间点行为的衰减系数，取值 (0, 1]
+     */
+    public double factor(LocalDateTime time) {
+        if (time == null || lambda == 0.0) {
+            return 1.0;
+        }
+        long days = today - time.toLocalDate().toEpochDay();
+        return days <= 0 ? 1.0 : Math.exp(-lambda * days);
+    }
+}
@@ -0,0 +1,100 @@
+package org.lt.commushop.service.UtilsService.recommend;
+
+/**
+ * 有界小顶堆：在线收集得分最高的 K 个 (id, score)
+ * 堆顶是当前 K 个中最差的一个，新元素只需与堆顶比较，单次插入 O(log K)。
+ * 得分相同时 id 较小者优先，保证结果与遍历顺序无关。
+ */
+public class TopKCollector {
+    private final int capacity;
+    private final int[] ids;
+    private final double[] scores;
+    private int size;
+
+    public TopKCollector(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.ids = new int[this.capacity];
+        this.scores = new double[this.capacity];
+    }
+
+    public void offer(int id, double score) {
+        if (size < capacity) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && better(id, score, ids[0], scores[0])) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按得分从高到低导出为近邻列表，导出后收集器被清空
+     */
+    public NeighborList toNeighborList() {
+        int n = size;
+        int[] outIds = new int[n];
+        float[] outScores = new float[n];
+        // 依次弹出堆顶（最差者），从数组尾部往前填
+        for (int k = n - 1; k >= 0; k--) {
+            outIds[k] = ids[0];
+            outScores[k] = (float) scores[0];
+            size--;
+            if (size > 0) {
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return n == 0 ? NeighborList.EMPTY : new NeighborList(outIds, outScores);
+    }
+
+    /** a 是否严格优于 b */
+    private static boolean better(int idA, double scoreA, int idB, double scoreB) {
+        return scoreA > scoreB || (scoreA == scoreB && idA < idB);
+    }
+
+    private void siftUp(int k) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (!better(ids[parent], scores[parent], ids[k], scores[k])) {
+                break;
+            }
+            swap(k, parent);
+            k = parent;
+        }
+    }
+
+    private void siftDown(int k) {
+        while (true) {
+            int left = 2 * k + 1;
+            if (left >= size) {
+                break;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(ids[left], scores[left], ids[right], scores[right])) {
+                worst = right;
+            }
+            if (!better(ids[k], scores[k], ids[worst], scores[worst])) {
+                break;
+            }
+            swap(k, worst);
+            k = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 
 import org.lt.commushop.domain.Hander.CollectionVO;
+import org.lt.commushop.domain.Hander.UserBehaviorEvent;
 import org.lt.commushop.domain.entity.Collection;
 import org.lt.commushop.domain.entity.Product;
 import org.lt.commushop.exception.BusinessException;
@@ -14,8 +15,10 @@ import org.lt.commushop.service.ICollectionService;
 import org.lt.commushop.service.IProductService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -35,6 +38,9 @@ public class CollectionServiceImpl extends ServiceImpl<CollectionMapper, Collect
     @Autowired
     private IProductService productService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public Collection addCollection(Collection collection) {
         // 检查商品是否存在
@@ -53,6 +59,10 @@ public class CollectionServiceImpl extends ServiceImpl<CollectionMapper, Collect
         }
         //插入新商品
         collectionMapper.insert(collection);
+        //通知推荐系统增量更新
+        eventPublisher.publishEvent(new UserBehaviorEvent(UserBehaviorEvent.Type.FAVORITE,
+                collection.getUserId(), collection.getProductId(), 1,
+                collection.getCollectionTime() != null ? collection.getCollectionTime() : LocalDateTime.now(), null));
         return collection;
     }
 
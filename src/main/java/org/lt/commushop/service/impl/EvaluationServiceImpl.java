@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.lt.commushop.domain.Hander.EvaluationVO;
+import org.lt.commushop.domain.Hander.UserBehaviorEvent;
 import org.lt.commushop.domain.entity.Evaluation;
 import org.lt.commushop.domain.entity.Product;
 import org.lt.commushop.domain.entity.User;
@@ -15,10 +16,12 @@ import org.lt.commushop.service.IProductService;
 import org.lt.commushop.service.IUserService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +44,9 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationMapper, Evaluat
     @Autowired
     private IProductService productService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean addEvaluation(Evaluation evaluation) {
@@ -48,7 +54,15 @@ public class EvaluationServiceImpl extends ServiceImpl<EvaluationMapper, Evaluat
         validateEvaluation(evaluation);
 
         // 2. 保存评价
-        return this.save(evaluation);
+        boolean saved = this.save(evaluation);
+
+        // 3. 通知推荐系统（事务提交后生效）
+        if (saved) {
+            eventPublisher.publishEvent(new UserBehaviorEvent(UserBehaviorEvent.Type.RATING,
+                    evaluation.getUserId(), evaluation.getProductId(), evaluation.getEvaluationScore(),
+                    evaluation.getEvaluationTime() != null ? evaluation.getEvaluationTime() : LocalDateTime.now(), null));
+        }
+        return saved;
     }
 
     @Override
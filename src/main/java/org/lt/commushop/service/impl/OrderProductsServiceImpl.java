@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.checkerframework.checker.units.qual.A;
+import org.lt.commushop.domain.Hander.UserBehaviorEvent;
 import org.lt.commushop.domain.entity.Order;
 import org.lt.commushop.domain.entity.OrderProducts;
 import org.lt.commushop.domain.entity.Product;
@@ -17,9 +18,11 @@ import org.lt.commushop.mapper.ProductMapper;
 import org.lt.commushop.mapper.UserMapper;
 import org.lt.commushop.service.IOrderProductsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -33,6 +36,8 @@ public class OrderProductsServiceImpl extends ServiceImpl<OrderProductsMapper, O
     private UserMapper userMapper;
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
     public Double saveBatchOrderProducts(List<OrderProducts> orderProducts) {
@@ -89,6 +94,13 @@ public class OrderProductsServiceImpl extends ServiceImpl<OrderProductsMapper, O
         if (!saveResult) {
             throw new BusinessException("批量添加订单商品失败：保存失败");
         }
+        // 通知推荐系统增量更新
+        LocalDateTime now = LocalDateTime.now();
+        for (OrderProducts orderProduct : orderProducts) {
+            eventPublisher.publishEvent(new UserBehaviorEvent(UserBehaviorEvent.Type.PURCHASE,
+                    orderProduct.getUserId(), orderProduct.getProductId(), orderProduct.getAmount(), now,
+                    orderProduct.getOrderproductId()));
+        }
 
         // 4.返回总价
         return totalAmount;
@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import lombok.extern.slf4j.Slf4j;
 import org.lt.commushop.common.Result;
+import org.lt.commushop.domain.Hander.ProductChangeEvent;
 import org.lt.commushop.domain.entity.Product;
 import org.lt.commushop.domain.entity.ProductCategoryRelationship;
 import org.lt.commushop.domain.entity.Category;
@@ -17,6 +18,7 @@ import org.lt.commushop.service.IProductService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.lt.commushop.service.UtilsService.MinioService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -43,6 +45,9 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
     @Autowired
     private CategoryMapper categoryMapper;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public IPage<Product> getProductPage(
             Integer current,
@@ -166,6 +171,8 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
             }
         }
 
+        //通知推荐系统增量更新
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.CREATED, productId));
         return product; // 返回新商品
     }
 
@@ -188,6 +195,8 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
             }
         }
 
+        //通知推荐系统增量更新
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, product.getProductId()));
         return product; // 返回更新后的商品
     }
 
@@ -231,6 +240,7 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
             int deleteCount = baseMapper.deleteById(productId);
             if (deleteCount > 0) {
                 log.info("成功删除商品，ID: {}", productId);
+                eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, productId));
                 return Result.success("商品删除成功");
             } else {
                 log.error("删除商品失败，ID: {}", productId);
@@ -256,7 +266,12 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
         //软删除
         existingProduct.setIsDeleted(1);
 
-        return this.updateById(existingProduct) ? Result.success("商品删除成功") : Result.error("商品删除失败");
+        if (!this.updateById(existingProduct)) {
+            return Result.error("商品删除失败");
+        }
+        //通知推荐系统从相似度模型中移除该商品
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, productId));
+        return Result.success("商品删除成功");
     }
 
     @Override
@@ -0,0 +1,188 @@
+package org.lt.commushop;
+
+import org.junit.jupiter.api.Test;
+import org.lt.commushop.service.UtilsService.recommend.NeighborList;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModelCodec;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 相似度模型二进制编码与写时复制操作的单元测试（不依赖Spring容器）
+ */
+public class SimilarityModelCodecTest {
+
+    /**
+     * 近邻按分数排序，ID 不单调（相邻差值有负数）；含空行和跨度较大的商品ID
+     */
+    private static SimilarityModel sampleModel() {
+        int[] productIds = {300000, 7, 42, 1};
+        NeighborList[] lists = {
+                new NeighborList(new int[]{42, 7, 1}, new float[]{0.9f, 0.5f, 0.25f}),
+                new NeighborList(new int[]{300000, 1}, new float[]{0.5f, 0.125f}),
+                NeighborList.EMPTY,
+                new NeighborList(new int[]{300000, 7}, new float[]{0.25f, 0.125f})
+        };
+        return SimilarityModel.of(productIds, lists);
+    }
+
+    @Test
+    public void roundTripUncompressed() {
+        SimilarityModel model = sampleModel();
+        byte[] bytes = SimilarityModelCodec.encode(model, false);
+        assertTrue(SimilarityModelCodec.isEncoded(bytes));
+        assertModelEquals(model, SimilarityModelCodec.decode(bytes));
+    }
+
+    @Test
+    public void roundTripCompressed() {
+        SimilarityModel model = sampleModel();
+        byte[] bytes = SimilarityModelCodec.encode(model, true);
+        assertTrue(SimilarityModelCodec.isEncoded(bytes));
+        assertModelEquals(model, SimilarityModelCodec.decode(bytes));
+    }
+
+    @Test
+    public void roundTripEmptyModelAndEmptyRows() {
+        SimilarityModel empty = new SimilarityModel(new int[0], new NeighborList[0]);
+        assertEquals(0, SimilarityModelCodec.decode(SimilarityModelCodec.encode(empty, false)).size());
+        assertEquals(0, SimilarityModelCodec.decode(SimilarityModelCodec.encode(empty, true)).size());
+
+        SimilarityModel emptyRows = new SimilarityModel(new int[]{3, 9},
+                new NeighborList[]{NeighborList.EMPTY, NeighborList.EMPTY});
+        SimilarityModel decoded = SimilarityModelCodec.decode(SimilarityModelCodec.encode(emptyRows, true));
+        assertModelEquals(emptyRows, decoded);
+        assertEquals(0, decoded.entryCount());
+    }
+
+    @Test
+    public void rejectsBadMagicAndVersion() {
+        byte[] badMagic = SimilarityModelCodec.encode(sampleModel(), false);
+        badMagic[0] = 'X';
+        assertFalse(SimilarityModelCodec.isEncoded(badMagic));
+        assertThrows(IllegalArgumentException.class, () -> SimilarityModelCodec.decode(badMagic));
+
+        byte[] badVersion = SimilarityModelCodec.encode(sampleModel(), false);
+        badVersion[4] = 99;
+        assertThrows(IllegalArgumentException.class, () -> SimilarityModelCodec.decode(badVersion));
+
+        assertThrows(IllegalArgumentException.class, () -> SimilarityModelCodec.decode(new byte[3]));
+        assertFalse(SimilarityModelCodec.isEncoded(null));
+    }
+
+    @Test
+    public void upsertReordersAndTruncates() {
+        NeighborList list = new NeighborList(new int[]{1, 2, 3}, new float[]{0.9f, 0.5f, 0.1f});
+
+        NeighborList raised = list.upsert(3, 0.95f, 3);
+        assertArrayEquals(new int[]{3, 1, 2}, ids(raised));
+        assertEquals(0.95f, raised.scoreAt(0));
+
+        NeighborList added = list.upsert(4, 0.6f, 3);
+        assertArrayEquals(new int[]{1, 4, 2}, ids(added));
+
+        // 分数不大于0时视为删除
+        assertArrayEquals(new int[]{1, 3}, ids(list.upsert(2, 0f, 3)));
+        // 原列表不变
+        assertArrayEquals(new int[]{1, 2, 3}, ids(list));
+        assertSame(list, list.without(99));
+    }
+
+    @Test
+    public void patchReplacesAndInsertsRows() {
+        SimilarityModel model = sampleModel();
+        Map<Integer, NeighborList> updates = new HashMap<>();
+        updates.put(7, new NeighborList(new int[]{1}, new float[]{0.75f}));
+        updates.put(20, new NeighborList(new int[]{42}, new float[]{0.5f}));
+        SimilarityModel patched = model.patch(updates);
+
+        assertEquals(5, patched.size());
+        int[] productIds = new int[patched.size()];
+        for (int i = 0; i < patched.size(); i++) {
+            productIds[i] = patched.productIdAt(i);
+        }
+        assertArrayEquals(new int[]{1, 7, 20, 42, 300000}, productIds);
+        assertArrayEquals(new int[]{1}, ids(patched.neighbors(7)));
+        assertArrayEquals(new int[]{42}, ids(patched.neighbors(20)));
+        assertSame(model.neighbors(300000), patched.neighbors(300000));
+        // 原模型不变
+        assertEquals(4, model.size());
+        assertNull(model.neighbors(20));
+        assertModelEquals(patched, SimilarityModelCodec.decode(SimilarityModelCodec.encode(patched, true)));
+    }
+
+    @Test
+    public void removeDropsRowAndColumn() {
+        SimilarityModel model = sampleModel();
+        SimilarityModel removed = model.remove(7);
+
+        assertEquals(3, removed.size());
+        assertNull(removed.neighbors(7));
+        assertArrayEquals(new int[]{42, 1}, ids(removed.neighbors(300000)));
+        assertArrayEquals(new int[]{300000}, ids(removed.neighbors(1)));
+        assertEquals(model.entryCount() - 4, removed.entryCount());
+        // 删除不存在的商品不改变内容
+        assertModelEquals(model, model.remove(12345));
+        assertModelEquals(removed, SimilarityModelCodec.decode(SimilarityModelCodec.encode(removed, false)));
+    }
+
+    @Test
+    public void rowRoundTripAndDeletion() {
+        NeighborList list = new NeighborList(new int[]{90, 3, 4000}, new float[]{0.8f, 0.4f, 0.2f});
+        assertArrayEquals(ids(list), ids(SimilarityModelCodec.decodeRow(SimilarityModelCodec.encodeRow(list))));
+        assertEquals(0, SimilarityModelCodec.decodeRow(SimilarityModelCodec.encodeRow(NeighborList.EMPTY)).size());
+        assertEquals(0, SimilarityModelCodec.encodeRow(null).length);
+        assertNull(SimilarityModelCodec.decodeRow(new byte[0]));
+        byte[] truncated = SimilarityModelCodec.encodeRow(list);
+        assertThrows(IllegalArgumentException.class,
+                () -> SimilarityModelCodec.decodeRow(Arrays.copyOf(truncated, truncated.length - 1)));
+    }
+
+    @Test
+    public void diffThenPatchRestoresModel() {
+        SimilarityModel base = sampleModel();
+        Map<Integer, NeighborList> updates = new HashMap<>();
+        updates.put(42, new NeighborList(new int[]{1}, new float[]{0.3f}));
+        updates.put(20, new NeighborList(new int[]{42}, new float[]{0.5f}));
+        SimilarityModel changed = base.patch(updates).remove(7);
+
+        Map<Integer, NeighborList> diff = changed.diff(base);
+        // 7 被删除；42、20 被替换或新增；300000、1 的近邻中去掉了 7
+        assertEquals(5, diff.size());
+        assertTrue(diff.containsKey(7));
+        assertNull(diff.get(7));
+        assertModelEquals(changed, base.patch(diff));
+        assertTrue(changed.diff(changed).isEmpty());
+    }
+
+    private static void assertModelEquals(SimilarityModel expected, SimilarityModel actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.productIdAt(i), actual.productIdAt(i));
+            NeighborList e = expected.neighborsAt(i);
+            NeighborList a = actual.neighborsAt(i);
+            assertArrayEquals(ids(e), ids(a));
+            for (int k = 0; k < e.size(); k++) {
+                assertEquals(e.scoreAt(k), a.scoreAt(k));
+            }
+        }
+    }
+
+    private static int[] ids(NeighborList list) {
+        int[] ids = new int[list.size()];
+        for (int k = 0; k < list.size(); k++) {
+            ids[k] = list.idAt(k);
+        }
+        return ids;
+    }
+}
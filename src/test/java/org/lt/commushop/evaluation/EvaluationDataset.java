@@ -0,0 +1,237 @@
+package org.lt.commushop.evaluation;
+
+import org.lt.commushop.domain.Hander.InteractionRow;
+import org.lt.commushop.domain.Hander.ProductBehavior;
+import org.lt.commushop.domain.Hander.RecommendItem;
+import org.lt.commushop.domain.Hander.UserBehaviorData;
+import org.lt.commushop.domain.entity.Product;
+import org.lt.commushop.domain.entity.ProductCategoryRelationship;
+import org.lt.commushop.domain.entity.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 离线评估数据集：从 CSV 读取商品、类别、用户以及订单商品/收藏/评价三类行为，按时间切分为训练集与测试集
+ * <p>
+ * 训练集（切分时间之前的行为）用于构建模型和用户画像，
+ * 测试集为每个用户在切分时间之后新购买或新收藏、且训练期内未交互过的商品，作为推荐的"正确答案"。
+ * CSV 首行为表头，列与对应数据表一致，字段内不含逗号；时间格式为 yyyy-MM-dd HH:mm:ss。
+ * </p>
+ */
+public class EvaluationDataset {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final List<Product> products = new ArrayList<>();
+    private final List<ProductCategoryRelationship> relationships = new ArrayList<>();
+    private final Map<Integer, User> users = new HashMap<>();
+    private final Set<Integer> liveProducts = new HashSet<>();
+    // 训练集，供协同过滤流式构建倒排索引
+    private final List<InteractionRow> trainPurchases = new ArrayList<>();
+    private final List<InteractionRow> trainFavorites = new ArrayList<>();
+    // 训练集折叠出的用户画像（与 UserBehaviorLoader 的折叠规则一致）
+    private final Map<Integer, UserBehaviorData> trainBehaviors = new TreeMap<>();
+    // 测试集：用户 -> 切分时间之后新交互的商品
+    private final Map<Integer, Set<Integer>> testItems = new TreeMap<>();
+    private final LocalDateTime splitTime;
+
+    private EvaluationDataset(LocalDateTime splitTime) {
+        this.splitTime = splitTime;
+    }
+
+    /**
+     * 读取数据集
+     * @param dir 为 null 时读取类路径下的 recommend-eval 目录（仓库自带的样例数据），否则读取该目录下的同名文件
+     * @param splitTime 训练集/测试集切分时间
+     */
+    public static EvaluationDataset load(String dir, LocalDateTime splitTime) throws IOException {
+        EvaluationDataset dataset = new EvaluationDataset(splitTime);
+        for (String[] row : read(dir, "products.csv")) {
+            Product product = new Product();
+            product.setProductId(Integer.valueOf(row[0]));
+            product.setProductName(row[1]);
+            product.setProductDesc(row[2]);
+            product.setGroupPrice(new BigDecimal(row[3]));
+            product.setIsDeleted(Integer.valueOf(row[4]));
+            dataset.products.add(product);
+            if (product.getIsDeleted() != 1) {
+                dataset.liveProducts.add(product.getProductId());
+            }
+        }
+        for (String[] row : read(dir, "product_category.csv")) {
+            ProductCategoryRelationship relationship = new ProductCategoryRelationship();
+            relationship.setProductId(Integer.valueOf(row[0]));
+            relationship.setCategoryId(Integer.valueOf(row[1]));
+            dataset.relationships.add(relationship);
+        }
+        for (String[] row : read(dir, "users.csv")) {
+            User user = new User();
+            user.setUserId(Integer.valueOf(row[0]));
+            user.setGender(Integer.valueOf(row[1]));
+            user.setEmail(row[2]);
+            dataset.users.put(user.getUserId(), user);
+        }
+        Map<Integer, Set<Integer>> laterItems = new HashMap<>();
+        for (String[] row : read(dir, "order_products.csv")) {
+            InteractionRow interaction = interaction(row[0], row[1], Integer.parseInt(row[2]), row[3]);
+            if (interaction.getBehaviorTime().isBefore(splitTime)) {
+                dataset.trainPurchases.add(interaction);
+                ProductBehavior behavior = dataset.behavior(interaction);
+                behavior.setPurchaseCount(behavior.getPurchaseCount() + interaction.getAmount());
+            } else {
+                laterItems.computeIfAbsent(interaction.getUserId(), k -> new LinkedHashSet<>()).add(interaction.getProductId());
+            }
+        }
+        for (String[] row : read(dir, "collection.csv")) {
+            InteractionRow interaction = interaction(row[0], row[1], 1, row[2]);
+            if (interaction.getBehaviorTime().isBefore(splitTime)) {
+                dataset.trainFavorites.add(interaction);
+                ProductBehavior behavior = dataset.behavior(interaction);
+                behavior.setFavorited(true);
+                behavior.setFavoriteTime(interaction.getBehaviorTime());
+            } else {
+                laterItems.computeIfAbsent(interaction.getUserId(), k -> new LinkedHashSet<>()).add(interaction.getProductId());
+            }
+        }
+        // 评价只进入训练画像，测试集以购买和收藏为准（评价总是跟随购买）
+        for (String[] row : read(dir, "evaluation.csv")) {
+            InteractionRow interaction = interaction(row[0], row[1], 1, row[3]);
+            if (interaction.getBehaviorTime().isBefore(splitTime)) {
+                dataset.behavior(interaction).setRating(Integer.valueOf(row[2]));
+            }
+        }
+        // 训练期内已交互过的商品、已下架的商品不作为测试答案（推荐本身也会排除它们）
+        for (Map.Entry<Integer, Set<Integer>> entry : laterItems.entrySet()) {
+            UserBehaviorData train = dataset.trainBehaviors(entry.getKey());
+            Set<Integer> relevant = entry.getValue().stream()
+                    .filter(productId -> !train.getBehaviors().containsKey(productId))
+                    .filter(dataset.liveProducts::contains)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            if (!relevant.isEmpty()) {
+                dataset.testItems.put(entry.getKey(), relevant);
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * 训练期内热门商品（热门推荐的离线替身）：切分时间前 days 天内的购买数量与收藏数加权求和，分数按第一名归一化
+     */
+    public List<RecommendItem> popular(int days, double purchaseWeight, double favoriteWeight, int topN) {
+        LocalDateTime from = splitTime.minusDays(days);
+        Map<Integer, Double> counts = new HashMap<>();
+        for (InteractionRow row : trainPurchases) {
+            if (!row.getBehaviorTime().isBefore(from)) {
+                counts.merge(row.getProductId(), purchaseWeight * row.getAmount(), Double::sum);
+            }
+        }
+        for (InteractionRow row : trainFavorites) {
+            if (!row.getBehaviorTime().isBefore(from)) {
+                counts.merge(row.getProductId(), favoriteWeight, Double::sum);
+            }
+        }
+        List<Map.Entry<Integer, Double>> ranked = counts.entrySet().stream()
+                .filter(e -> liveProducts.contains(e.getKey()))
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.<Integer, Double>comparingByKey()))
+                .limit(topN)
+                .collect(Collectors.toList());
+        List<RecommendItem> items = new ArrayList<>(ranked.size());
+        for (Map.Entry<Integer, Double> entry : ranked) {
+            items.add(new RecommendItem(entry.getKey(), entry.getValue() / ranked.get(0).getValue()));
+        }
+        return items;
+    }
+
+    /** 用户的训练期画像，没有训练期行为时为空画像 */
+    public UserBehaviorData trainBehaviors(Integer userId) {
+        UserBehaviorData data = trainBehaviors.get(userId);
+        return data != null ? data : new UserBehaviorData();
+    }
+
+    public List<Product> products() {
+        return products;
+    }
+
+    public List<ProductCategoryRelationship> relationships() {
+        return relationships;
+    }
+
+    public User user(Integer userId) {
+        return users.get(userId);
+    }
+
+    public boolean isLive(int productId) {
+        return liveProducts.contains(productId);
+    }
+
+    public int liveProductCount() {
+        return liveProducts.size();
+    }
+
+    public List<InteractionRow> trainPurchases() {
+        return trainPurchases;
+    }
+
+    public List<InteractionRow> trainFavorites() {
+        return trainFavorites;
+    }
+
+    public Map<Integer, Set<Integer>> testItems() {
+        return testItems;
+    }
+
+    public LocalDateTime splitTime() {
+        return splitTime;
+    }
+
+    private ProductBehavior behavior(InteractionRow row) {
+        return trainBehaviors.computeIfAbsent(row.getUserId(), k -> new UserBehaviorData())
+                .getBehaviors().computeIfAbsent(row.getProductId(), k -> new ProductBehavior());
+    }
+
+    private static InteractionRow interaction(String userId, String productId, int amount, String time) {
+        InteractionRow row = new InteractionRow();
+        row.setUserId(Integer.valueOf(userId));
+        row.setProductId(Integer.valueOf(productId));
+        row.setAmount(amount);
+        row.setBehaviorTime(LocalDateTime.parse(time, TIME_FORMAT));
+        return row;
+    }
+
+    private static List<String[]> read(String dir, String file) throws IOException {
+        InputStream in = dir == null
+                ? EvaluationDataset.class.getClassLoader().getResourceAsStream("recommend-eval/" + file)
+                : Files.newInputStream(Paths.get(dir, file));
+        if (in == null) {
+            throw new IOException("找不到评估数据文件：" + file);
+        }
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // 表头
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    rows.add(line.split(",", -1));
+                }
+            }
+        }
+        return rows;
+    }
+}
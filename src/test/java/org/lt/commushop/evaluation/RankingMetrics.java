@@ -0,0 +1,120 @@
+package org.lt.commushop.evaluation;
+
+import org.lt.commushop.domain.Hander.RecommendItem;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 单个推荐算法的离线指标累加器
+ * 逐个用户累加 Precision@K、Recall@K、NDCG@K（二元相关性），
+ * 同时统计推荐过的不同商品数（覆盖率）和每次请求的耗时分布
+ */
+public class RankingMetrics {
+    private final String name;
+    private final int k;
+    private int users;
+    private int servedUsers;
+    private double precisionSum;
+    private double recallSum;
+    private double ndcgSum;
+    private final Set<Integer> recommended = new HashSet<>();
+    private long[] latencies = new long[64];
+    private int latencyCount;
+
+    public RankingMetrics(String name, int k) {
+        this.name = name;
+        this.k = k;
+    }
+
+    /**
+     * 记录一个用户的推荐结果
+     * @param items 推荐列表，按分数降序，只看前 K 个
+     * @param relevant 该用户测试期内新交互的商品
+     * @param nanos 本次推荐耗时（纳秒）
+     */
+    public void add(List<RecommendItem> items, Set<Integer> relevant, long nanos) {
+        users++;
+        if (latencyCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencyCount * 2);
+        }
+        latencies[latencyCount++] = nanos;
+        int size = Math.min(k, items.size());
+        if (size > 0) {
+            servedUsers++;
+        }
+        int hits = 0;
+        double dcg = 0.0;
+        for (int rank = 0; rank < size; rank++) {
+            int productId = items.get(rank).getProductId();
+            recommended.add(productId);
+            if (relevant.contains(productId)) {
+                hits++;
+                dcg += 1.0 / log2(rank + 2);
+            }
+        }
+        double idcg = 0.0;
+        for (int rank = 0; rank < Math.min(k, relevant.size()); rank++) {
+            idcg += 1.0 / log2(rank + 2);
+        }
+        precisionSum += (double) hits / k;
+        recallSum += relevant.isEmpty() ? 0.0 : (double) hits / relevant.size();
+        ndcgSum += idcg == 0.0 ? 0.0 : dcg / idcg;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public double precision() {
+        return users == 0 ? 0.0 : precisionSum / users;
+    }
+
+    public double recall() {
+        return users == 0 ? 0.0 : recallSum / users;
+    }
+
+    public double ndcg() {
+        return users == 0 ? 0.0 : ndcgSum / users;
+    }
+
+    /** 推荐过的不同商品数 / 在售商品数 */
+    public double coverage(int catalogSize) {
+        return catalogSize == 0 ? 0.0 : (double) recommended.size() / catalogSize;
+    }
+
+    /** 推荐列表非空的用户占比 */
+    public double servedRatio() {
+        return users == 0 ? 0.0 : (double) servedUsers / users;
+    }
+
+    /** 请求耗时分位数（微秒），p 取 0~100 */
+    public double latencyMicros(double p) {
+        if (latencyCount == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100.0 * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(latencyCount - 1, index))] / 1000.0;
+    }
+
+    /** 请求平均耗时（微秒） */
+    public double meanLatencyMicros() {
+        long sum = 0;
+        for (int i = 0; i < latencyCount; i++) {
+            sum += latencies[i];
+        }
+        return latencyCount == 0 ? 0.0 : sum / 1000.0 / latencyCount;
+    }
+
+    public int users() {
+        return users;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
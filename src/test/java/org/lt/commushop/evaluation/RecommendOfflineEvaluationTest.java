@@ -0,0 +1,323 @@
+package org.lt.commushop.evaluation;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.hankcs.hanlp.HanLP;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.lt.commushop.config.RecommendProperties;
+import org.lt.commushop.domain.Hander.InteractionRow;
+import org.lt.commushop.domain.Hander.RecommendItem;
+import org.lt.commushop.domain.Hander.UserBehaviorData;
+import org.lt.commushop.domain.entity.Product;
+import org.lt.commushop.domain.entity.ProductCategoryRelationship;
+import org.lt.commushop.mapper.CollectionMapper;
+import org.lt.commushop.mapper.OrderProductsMapper;
+import org.lt.commushop.mapper.ProductCategoryRelationshipMapper;
+import org.lt.commushop.mapper.UserMapper;
+import org.lt.commushop.service.IProductService;
+import org.lt.commushop.service.UtilsService.ContentBasedService;
+import org.lt.commushop.service.UtilsService.HybridRecommendationService;
+import org.lt.commushop.service.UtilsService.ItemBasedCFService;
+import org.lt.commushop.service.UtilsService.ProductCatalog;
+import org.lt.commushop.service.UtilsService.SimilarityModelStore;
+import org.lt.commushop.service.UtilsService.TrendingService;
+import org.lt.commushop.service.UtilsService.recommend.BuildProgress;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModel;
+import org.lt.commushop.service.UtilsService.recommend.SimilarityModelCodec;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 推荐算法离线评估：在 CSV 样例数据上按时间切分，对协同过滤、基于内容、混合推荐以及热门基线
+ * 计算 Precision@K、Recall@K、NDCG@K、覆盖率，并统计模型构建耗时、编码后模型大小和单次推荐耗时。
+ * <p>
+ * 直接实例化真实的推荐服务，Mapper、Redis 相关依赖全部替换为基于数据集的替身，不需要 MySQL 和 Redis；
+ * 评估耗时较长，默认跳过，需加 -Deval=true 才会运行（同时打上 evaluation 标签，便于按标签筛选）。
+ * 推荐配置读取 application.yml 中的 recommend 段，可用同名系统属性覆盖，便于对比调参，例如：
+ * mvn test -Dtest=RecommendOfflineEvaluationTest -Deval=true -Drecommend.cf.purchase-kernel=adjusted-cosine
+ * 评估参数：eval.dir（数据目录，默认类路径下 recommend-eval）、eval.split（切分时间）、eval.k、eval.popular-days。
+ * </p>
+ * 热门推荐的 Redis 计数器离线时以训练集末尾 eval.popular-days 天的加权购买/收藏数代替。
+ */
+@Tag("evaluation")
+@EnabledIfSystemProperty(named = "eval", matches = "true")
+public class RecommendOfflineEvaluationTest {
+    private static final int BUILD_ROUNDS = 3;
+
+    private EvaluationDataset dataset;
+    private RecommendProperties recommendProperties;
+    private ForkJoinPool buildPool;
+    private ItemBasedCFService itemBasedCFService;
+    private ContentBasedService contentBasedService;
+    private HybridRecommendationService hybridRecommendationService;
+    private Level previousLogLevel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 推荐服务逐个用户打 INFO 日志，评估时关闭，避免日志输出计入请求耗时
+        Logger logger = (Logger) LoggerFactory.getLogger("org.lt.commushop");
+        previousLogLevel = logger.getLevel();
+        logger.setLevel(Level.WARN);
+        // 服务里的 LambdaQueryWrapper 需要实体的字段缓存，不启动 MyBatis 时手动初始化
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, Product.class);
+        TableInfoHelper.initTableInfo(assistant, ProductCategoryRelationship.class);
+
+        dataset = EvaluationDataset.load(System.getProperty("eval.dir"),
+                LocalDateTime.parse(System.getProperty("eval.split", "2025-03-01T00:00:00")));
+        recommendProperties = bindRecommendProperties();
+        int parallelism = recommendProperties.getBuild().getParallelism();
+        buildPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+
+        ProductCatalog productCatalog = mock(ProductCatalog.class);
+        when(productCatalog.isLive(anyInt())).thenAnswer(inv -> dataset.isLive(inv.getArgument(0)));
+        SimilarityModelStore similarityModelStore = mock(SimilarityModelStore.class);
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+        // 协同过滤：订单商品、收藏只回放训练集
+        OrderProductsMapper orderProductsMapper = mock(OrderProductsMapper.class);
+        doAnswer(inv -> replay(inv.getArgument(0), dataset.trainPurchases()))
+                .when(orderProductsMapper).streamPurchases(any());
+        CollectionMapper collectionMapper = mock(CollectionMapper.class);
+        doAnswer(inv -> replay(inv.getArgument(0), dataset.trainFavorites()))
+                .when(collectionMapper).streamFavorites(any());
+        itemBasedCFService = new ItemBasedCFService();
+        ReflectionTestUtils.setField(itemBasedCFService, "orderProductsMapper", orderProductsMapper);
+        ReflectionTestUtils.setField(itemBasedCFService, "collectionMapper", collectionMapper);
+        ReflectionTestUtils.setField(itemBasedCFService, "productCatalog", productCatalog);
+        ReflectionTestUtils.setField(itemBasedCFService, "recommendProperties", recommendProperties);
+        ReflectionTestUtils.setField(itemBasedCFService, "similarityBuildPool", buildPool);
+        ReflectionTestUtils.setField(itemBasedCFService, "similarityModelStore", similarityModelStore);
+        ReflectionTestUtils.setField(itemBasedCFService, "eventPublisher", eventPublisher);
+
+        // 基于内容：商品、类别关系、用户信息来自数据集
+        IProductService productService = mock(IProductService.class);
+        List<Product> liveProducts = dataset.products().stream()
+                .filter(product -> dataset.isLive(product.getProductId()))
+                .collect(Collectors.toList());
+        when(productService.list(org.mockito.ArgumentMatchers.<Wrapper<Product>>any())).thenReturn(liveProducts);
+        ProductCategoryRelationshipMapper relationshipMapper = mock(ProductCategoryRelationshipMapper.class);
+        when(relationshipMapper.selectList(org.mockito.ArgumentMatchers.<Wrapper<ProductCategoryRelationship>>any()))
+                .thenAnswer(inv -> selectRelationships(inv.getArgument(0)));
+        UserMapper userMapper = mock(UserMapper.class);
+        when(userMapper.selectById(any())).thenAnswer(inv -> dataset.user((Integer) inv.getArgument(0)));
+        contentBasedService = new ContentBasedService();
+        ReflectionTestUtils.setField(contentBasedService, "productService", productService);
+        ReflectionTestUtils.setField(contentBasedService, "productCategoryRelationshipMapper", relationshipMapper);
+        ReflectionTestUtils.setField(contentBasedService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(contentBasedService, "productCatalog", productCatalog);
+        ReflectionTestUtils.setField(contentBasedService, "recommendProperties", recommendProperties);
+        ReflectionTestUtils.setField(contentBasedService, "similarityBuildPool", buildPool);
+        ReflectionTestUtils.setField(contentBasedService, "similarityModelStore", similarityModelStore);
+        ReflectionTestUtils.setField(contentBasedService, "eventPublisher", eventPublisher);
+
+        hybridRecommendationService = new HybridRecommendationService();
+        ReflectionTestUtils.setField(hybridRecommendationService, "itemBasedCFService", itemBasedCFService);
+        ReflectionTestUtils.setField(hybridRecommendationService, "contentBasedService", contentBasedService);
+        ReflectionTestUtils.setField(hybridRecommendationService, "recommendProperties", recommendProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        buildPool.shutdownNow();
+        // 恢复日志级别（原级别为 null 时即继承父级），不影响同一JVM中后续运行的测试
+        ((Logger) LoggerFactory.getLogger("org.lt.commushop")).setLevel(previousLogLevel);
+    }
+
+    @Test
+    void evaluate() {
+        int k = Integer.getInteger("eval.k", 10);
+        int popularDays = Integer.getInteger("eval.popular-days", 30);
+        Map<Integer, Set<Integer>> testItems = dataset.testItems();
+        assertFalse(testItems.isEmpty(), "测试集为空，请检查切分时间");
+
+        // 1. 构建两个相似度模型，首轮预热（JIT、HanLP 词典加载）不计时
+        HanLP.segment("预热分词词典");
+        BuildResult cf = build(() -> itemBasedCFService.calculateAndStoreSimilarityMatrix(new BuildProgress()));
+        BuildResult cb = build(() -> contentBasedService.calculateAndStoreContentSimilarityMatrix(new BuildProgress()));
+        assertTrue(cf.model.size() > 0, "协同过滤模型为空");
+        assertTrue(cb.model.size() > 0, "基于内容模型为空");
+
+        // 2. 热门列表只算一次，长度足够扣除任一用户已有的商品
+        int maxHistory = 0;
+        for (Integer userId : testItems.keySet()) {
+            maxHistory = Math.max(maxHistory, dataset.trainBehaviors(userId).getBehaviors().size());
+        }
+        RecommendProperties.Trending trending = recommendProperties.getTrending();
+        List<RecommendItem> popular = dataset.popular(popularDays, trending.getPurchaseWeight(),
+                trending.getFavoriteWeight(), k * 2 + maxHistory);
+
+        // 3. 逐个用户推荐并累加指标；先整体预热一轮，第二轮计时
+        RankingMetrics cfMetrics = new RankingMetrics("协同过滤", k);
+        RankingMetrics cbMetrics = new RankingMetrics("基于内容", k);
+        RankingMetrics hybridMetrics = new RankingMetrics("混合推荐", k);
+        RankingMetrics popularMetrics = new RankingMetrics("热门基线", k);
+        for (int round = 0; round < 2; round++) {
+            boolean record = round == 1;
+            for (Map.Entry<Integer, Set<Integer>> entry : testItems.entrySet()) {
+                Integer userId = entry.getKey();
+                UserBehaviorData data = dataset.trainBehaviors(userId);
+                evaluateOne(cfMetrics, entry.getValue(), record,
+                        () -> itemBasedCFService.recommendProducts(userId, data, cf.model, k));
+                evaluateOne(cbMetrics, entry.getValue(), record,
+                        () -> contentBasedService.recommendProducts(userId, data, cb.model, k));
+                evaluateOne(hybridMetrics, entry.getValue(), record,
+                        () -> hybridRecommendationService.computeHybridScores(userId, data, cf.model, cb.model, popular, k).getItems());
+                evaluateOne(popularMetrics, entry.getValue(), record,
+                        () -> TrendingService.excludeOwned(popular, data, k));
+            }
+        }
+
+        // 4. 输出报告
+        System.out.printf("%n离线评估：切分时间 %s，K = %d，评估用户 %d 个，在售商品 %d 个%n",
+                dataset.splitTime(), k, testItems.size(), dataset.liveProductCount());
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "模型", "构建ms", "商品数", "近邻条目", "编码字节", "压缩字节");
+        printBuild("协同过滤", cf);
+        printBuild("基于内容", cb);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "算法", "P@K", "R@K", "NDCG@K", "覆盖率", "有结果", "均值us", "p50us", "p95us");
+        for (RankingMetrics metrics : new RankingMetrics[]{cfMetrics, cbMetrics, hybridMetrics, popularMetrics}) {
+            System.out.printf("%-8s %10.4f %10.4f %10.4f %10.4f %10.4f %10.1f %10.1f %10.1f%n",
+                    metrics.name(), metrics.precision(), metrics.recall(), metrics.ndcg(),
+                    metrics.coverage(dataset.liveProductCount()), metrics.servedRatio(),
+                    metrics.meanLatencyMicros(), metrics.latencyMicros(50), metrics.latencyMicros(95));
+            assertTrue(metrics.precision() >= 0 && metrics.precision() <= 1);
+            assertTrue(metrics.recall() >= 0 && metrics.recall() <= 1);
+            assertTrue(metrics.ndcg() >= 0 && metrics.ndcg() <= 1);
+        }
+        assertTrue(hybridMetrics.servedRatio() > 0, "混合推荐没有为任何用户产生结果");
+    }
+
+    private static void evaluateOne(RankingMetrics metrics, Set<Integer> relevant, boolean record,
+                                    Supplier<List<RecommendItem>> recommender) {
+        long start = System.nanoTime();
+        List<RecommendItem> items = recommender.get();
+        long nanos = System.nanoTime() - start;
+        if (record) {
+            metrics.add(items, relevant, nanos);
+        }
+    }
+
+    private static BuildResult build(Supplier<SimilarityModel> builder) {
+        builder.get();
+        BuildResult result = new BuildResult();
+        long total = 0;
+        for (int round = 0; round < BUILD_ROUNDS; round++) {
+            long start = System.nanoTime();
+            result.model = builder.get();
+            total += System.nanoTime() - start;
+        }
+        result.buildMillis = total / 1e6 / BUILD_ROUNDS;
+        result.encodedBytes = SimilarityModelCodec.encode(result.model, false).length;
+        result.compressedBytes = SimilarityModelCodec.encode(result.model, true).length;
+        return result;
+    }
+
+    private static void printBuild(String name, BuildResult result) {
+        System.out.printf("%-8s %10.1f %10d %10d %10d %10d%n", name, result.buildMillis, result.model.size(),
+                result.model.entryCount(), result.encodedBytes, result.compressedBytes);
+    }
+
+    /**
+     * 把训练集逐行回放给流式查询的 ResultHandler
+     */
+    private static Void replay(ResultHandler<InteractionRow> handler, List<InteractionRow> rows) {
+        int[] count = new int[1];
+        for (InteractionRow row : rows) {
+            count[0]++;
+            handler.handleResult(new ResultContext<InteractionRow>() {
+                @Override
+                public InteractionRow getResultObject() {
+                    return row;
+                }
+
+                @Override
+                public int getResultCount() {
+                    return count[0];
+                }
+
+                @Override
+                public boolean isStopped() {
+                    return false;
+                }
+
+                @Override
+                public void stop() {
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * 商品-类别关系查询的替身：没有参数时为全量加载（类别索引），
+     * 带类别ID参数时为冷启动种子商品查询（category_id IN (...) LIMIT seed-size）
+     */
+    private List<ProductCategoryRelationship> selectRelationships(Wrapper<ProductCategoryRelationship> wrapper) {
+        Map<String, Object> params = ((AbstractWrapper<?, ?, ?>) wrapper).getParamNameValuePairs();
+        if (params.isEmpty()) {
+            return dataset.relationships();
+        }
+        Set<Object> categoryIds = new HashSet<>(params.values());
+        return dataset.relationships().stream()
+                .filter(relationship -> categoryIds.contains(relationship.getCategoryId()))
+                .limit(recommendProperties.getColdStart().getSeedSize())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * application.yml 的 recommend 段绑定为配置对象，系统属性优先
+     */
+    private static RecommendProperties bindRecommendProperties() throws IOException {
+        List<PropertySource<?>> sources = new ArrayList<>();
+        sources.add(new PropertiesPropertySource("systemProperties", System.getProperties()));
+        sources.addAll(new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yml")));
+        return new Binder(ConfigurationPropertySources.from(sources))
+                .bind("recommend", RecommendProperties.class)
+                .orElseGet(RecommendProperties::new);
+    }
+
+    private static final class BuildResult {
+        SimilarityModel model;
+        double buildMillis;
+        int encodedBytes;
+        int compressedBytes;
+    }
+}